@@ -0,0 +1,20 @@
+package com.dws.loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * All the traffic goes to the first two accounts, transfers are sent in both
+ * directions. Worst case for the account locks.
+ */
+class HotPairKeySelector implements KeySelector {
+
+	@Override
+	public int nextAccount(SplittableRandom random) {
+		return random.nextInt(2);
+	}
+
+	@Override
+	public int[] nextPair(SplittableRandom random) {
+		return random.nextBoolean() ? new int[] { 0, 1 } : new int[] { 1, 0 };
+	}
+}
@@ -0,0 +1,45 @@
+package com.dws.loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * Selects the accounts used by the generated requests.
+ */
+public interface KeySelector {
+
+	/**
+	 * This function is used for select the account of a get request
+	 * 
+	 * @param random - random of the calling thread
+	 * @return int - account index
+	 */
+	int nextAccount(SplittableRandom random);
+
+	/**
+	 * This function is used for select the from and to accounts of a transfer
+	 * 
+	 * @param random - random of the calling thread
+	 * @return int[] - from and to account index, always different
+	 */
+	default int[] nextPair(SplittableRandom random) {
+		int from = nextAccount(random);
+		int to = nextAccount(random);
+		while (to == from) {
+			to = nextAccount(random);
+		}
+		return new int[] { from, to };
+	}
+
+	static KeySelector of(String distribution, int accounts, double zipfExponent) {
+		switch (distribution) {
+		case "uniform":
+			return random -> random.nextInt(accounts);
+		case "zipfian":
+			return new ZipfianKeySelector(accounts, zipfExponent);
+		case "hotpair":
+			return new HotPairKeySelector();
+		default:
+			throw new IllegalArgumentException("Unknown distribution " + distribution);
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package com.dws.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Load generator for the accounts API. Creates the accounts, then sends
+ * transfer and get requests at a fixed arrival rate. The latency of a request is
+ * measured from the time it was scheduled to be sent, not from the time it was
+ * actually sent, so a slow server can not hide its queueing delay (coordinated
+ * omission). At the end the sum of all balances is compared with the created
+ * money and a JSON report is written.
+ */
+public class LoadGenerator {
+
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	private final LoadGeneratorConfig config;
+
+	private final KeySelector keySelector;
+
+	private final HttpClient httpClient;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	// Prefix of the account ids, unique per run
+	private final String accountPrefix = "loadgen-" + System.currentTimeMillis() + "-";
+
+	private final Histogram transferLatency = new ConcurrentHistogram(3);
+
+	private final Histogram getLatency = new ConcurrentHistogram(3);
+
+	private final LongAdder transfersCompleted = new LongAdder();
+
+	private final LongAdder transfersRejected = new LongAdder();
+
+	private final LongAdder getsCompleted = new LongAdder();
+
+	private final LongAdder errors = new LongAdder();
+
+	public LoadGenerator(LoadGeneratorConfig config) {
+		this.config = config;
+		this.keySelector = KeySelector.of(config.distribution, config.accounts, config.zipfExponent);
+		this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(5)).build();
+	}
+
+	public static void main(String[] args) throws Exception {
+		LoadGeneratorConfig config = LoadGeneratorConfig.parse(args);
+		Map<String, Object> report = new LoadGenerator(config).run();
+		new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(new File(config.report), report);
+		System.out.println("Report written to " + config.report);
+		@SuppressWarnings("unchecked")
+		Map<String, Object> conservation = (Map<String, Object>) report.get("conservation");
+		if (!Boolean.TRUE.equals(conservation.get("conserved"))) {
+			System.err.println("Money was not conserved: " + conservation);
+			System.exit(1);
+		}
+	}
+
+	Map<String, Object> run() throws Exception {
+		Instant startedAt = Instant.now();
+		createAccounts();
+		if (config.warmupSeconds > 0) {
+			drive(config.warmupSeconds);
+			resetStatistics();
+		}
+		long elapsedNanos = drive(config.durationSeconds);
+		Map<String, Object> conservation = checkConservation();
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("startedAt", startedAt.toString());
+		report.put("config", config.toMap());
+		report.put("elapsedSeconds", elapsedNanos / 1e9);
+		report.put("achievedRate", (transfersCompleted.sum() + transfersRejected.sum() + getsCompleted.sum())
+				/ (elapsedNanos / 1e9));
+		report.put("errors", errors.sum());
+		report.put("transfer", latencyReport(transferLatency, transfersCompleted.sum(), transfersRejected.sum()));
+		report.put("get", latencyReport(getLatency, getsCompleted.sum(), 0));
+		report.put("conservation", conservation);
+		return report;
+	}
+
+	private void createAccounts() throws Exception {
+		runAll(config.accounts, i -> {
+			String body = "{\"accountId\":\"" + accountId(i) + "\",\"balance\":" + config.initialBalance + "}";
+			int status = post("/v1/accounts", body);
+			if (status != 201) {
+				throw new IllegalStateException("Account " + accountId(i) + " creation failed with " + status);
+			}
+		});
+	}
+
+	// Sends rate * seconds requests, request i is scheduled at start + i / rate
+	private long drive(int seconds) throws Exception {
+		long total = (long) config.rate * seconds;
+		double intervalNanos = 1e9 / config.rate;
+		AtomicLong nextRequest = new AtomicLong();
+		long start = System.nanoTime();
+		List<Thread> workers = new ArrayList<>();
+		for (int w = 0; w < config.concurrency; w++) {
+			SplittableRandom random = new SplittableRandom(start + w);
+			Thread worker = new Thread(() -> {
+				long request;
+				while ((request = nextRequest.getAndIncrement()) < total) {
+					long scheduled = start + (long) (request * intervalNanos);
+					long wait = scheduled - System.nanoTime();
+					if (wait > 0) {
+						LockSupport.parkNanos(wait);
+					}
+					sendRequest(random, scheduled);
+				}
+			}, "loadgen-worker-" + w);
+			worker.start();
+			workers.add(worker);
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	private void sendRequest(SplittableRandom random, long scheduled) {
+		try {
+			if (random.nextDouble() < config.getRatio) {
+				int status = get("/v1/accounts/" + accountId(keySelector.nextAccount(random))).statusCode();
+				if (status == 200) {
+					getLatency.recordValue(System.nanoTime() - scheduled);
+					getsCompleted.increment();
+				} else {
+					errors.increment();
+				}
+			} else {
+				int[] pair = keySelector.nextPair(random);
+				int status = post("/v1/accounts/amount/transfer", "{\"accountFromId\":\"" + accountId(pair[0])
+						+ "\",\"accountToId\":\"" + accountId(pair[1]) + "\",\"amount\":" + config.transferAmount + "}");
+				if (status == 200 || status == 400) {
+					transferLatency.recordValue(System.nanoTime() - scheduled);
+					(status == 200 ? transfersCompleted : transfersRejected).increment();
+				} else {
+					errors.increment();
+				}
+			}
+		} catch (IOException e) {
+			errors.increment();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Total of all balances must be equal to the created money
+	private Map<String, Object> checkConservation() throws Exception {
+		BigDecimal[] balances = new BigDecimal[config.accounts];
+		runAll(config.accounts, i -> {
+			HttpResponse<String> response = get("/v1/accounts/" + accountId(i));
+			balances[i] = objectMapper.readTree(response.body()).get("balance").decimalValue();
+		});
+		BigDecimal actual = BigDecimal.ZERO;
+		for (BigDecimal balance : balances) {
+			actual = actual.add(balance);
+		}
+		BigDecimal expected = BigDecimal.valueOf(config.initialBalance).multiply(BigDecimal.valueOf(config.accounts));
+		Map<String, Object> conservation = new LinkedHashMap<>();
+		conservation.put("expectedTotal", expected);
+		conservation.put("actualTotal", actual);
+		conservation.put("conserved", expected.compareTo(actual) == 0);
+		return conservation;
+	}
+
+	private Map<String, Object> latencyReport(Histogram histogram, long completed, long rejected) {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("completed", completed);
+		report.put("rejected", rejected);
+		report.put("meanMicros", histogram.getMean() / NANOS_PER_MICRO);
+		for (double percentile : new double[] { 50, 90, 99, 99.9, 99.99 }) {
+			report.put("p" + percentile + "Micros", histogram.getValueAtPercentile(percentile) / NANOS_PER_MICRO);
+		}
+		report.put("maxMicros", histogram.getMaxValue() / NANOS_PER_MICRO);
+		// Full histogram, can be decoded and compared with the one of another build
+		ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+		int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+		report.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+		return report;
+	}
+
+	private void resetStatistics() {
+		transferLatency.reset();
+		getLatency.reset();
+		transfersCompleted.reset();
+		transfersRejected.reset();
+		getsCompleted.reset();
+		errors.reset();
+	}
+
+	private String accountId(int index) {
+		return accountPrefix + index;
+	}
+
+	private int post(String path, String body) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(config.baseUrl + path))
+				.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body)).build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+		return httpClient.send(HttpRequest.newBuilder(URI.create(config.baseUrl + path)).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+
+	private void runAll(int count, IndexTask task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(config.concurrency);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				int index = i;
+				results.add(executor.submit(() -> {
+					task.run(index);
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@FunctionalInterface
+	private interface IndexTask {
+		void run(int index) throws Exception;
+	}
+}
@@ -0,0 +1,93 @@
+package com.dws.loadgen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of the load generator, given as --name=value arguments.
+ */
+class LoadGeneratorConfig {
+
+	final String baseUrl;
+
+	final int accounts;
+
+	final long initialBalance;
+
+	final long transferAmount;
+
+	// Requests per second, transfer and get together
+	final int rate;
+
+	final int durationSeconds;
+
+	final int warmupSeconds;
+
+	// Share of get requests, the others are transfers
+	final double getRatio;
+
+	// uniform, zipfian or hotpair
+	final String distribution;
+
+	final double zipfExponent;
+
+	// Maximum number of requests in flight
+	final int concurrency;
+
+	final String report;
+
+	// Free text identifying the tested build in the report
+	final String label;
+
+	LoadGeneratorConfig(Map<String, String> options) {
+		baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+		accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+		initialBalance = Long.parseLong(options.getOrDefault("initial-balance", "1000000"));
+		transferAmount = Long.parseLong(options.getOrDefault("transfer-amount", "1"));
+		rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+		durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+		warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+		getRatio = Double.parseDouble(options.getOrDefault("get-ratio", "0.5"));
+		distribution = options.getOrDefault("distribution", "uniform");
+		zipfExponent = Double.parseDouble(options.getOrDefault("zipf-exponent", "0.99"));
+		concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+		report = options.getOrDefault("report", "loadgen-report.json");
+		label = options.getOrDefault("label", "");
+		if (accounts < 2) {
+			throw new IllegalArgumentException("At least 2 accounts are required");
+		}
+	}
+
+	static LoadGeneratorConfig parse(String[] args) {
+		return new LoadGeneratorConfig(options(args));
+	}
+
+	static Map<String, String> options(String[] args) {
+		Map<String, String> options = new LinkedHashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--") || !arg.contains("=")) {
+				throw new IllegalArgumentException("Expected --name=value but got " + arg);
+			}
+			int separator = arg.indexOf('=');
+			options.put(arg.substring(2, separator), arg.substring(separator + 1));
+		}
+		return options;
+	}
+
+	Map<String, Object> toMap() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("label", label);
+		map.put("baseUrl", baseUrl);
+		map.put("accounts", accounts);
+		map.put("initialBalance", initialBalance);
+		map.put("transferAmount", transferAmount);
+		map.put("rate", rate);
+		map.put("durationSeconds", durationSeconds);
+		map.put("warmupSeconds", warmupSeconds);
+		map.put("getRatio", getRatio);
+		map.put("distribution", distribution);
+		map.put("zipfExponent", zipfExponent);
+		map.put("concurrency", concurrency);
+		return map;
+	}
+}
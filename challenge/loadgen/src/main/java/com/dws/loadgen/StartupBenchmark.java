@@ -0,0 +1,168 @@
+package com.dws.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures the time from process launch to the first successful GET of an
+ * account, for the default boot jar and for the startup optimized run (class
+ * data sharing archive, lazy initialization and AOT when built with it). Each
+ * variant is started several times, the account is created as soon as the port
+ * accepts requests and the GET is polled until it answers 200. The result is
+ * appended as one JSON line to the history file, so the numbers can be tracked
+ * over time.
+ */
+public class StartupBenchmark {
+
+	private static final long POLL_INTERVAL_MILLIS = 5;
+
+	private static final long TIMEOUT_MILLIS = 120_000;
+
+	private static final String ACCOUNT_ID = "startup-benchmark";
+
+	private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofMillis(500)).build();
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = LoadGeneratorConfig.options(args);
+		int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+		StartupBenchmark benchmark = new StartupBenchmark();
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("startedAt", Instant.now().toString());
+		result.put("label", options.getOrDefault("label", ""));
+		result.put("runs", runs);
+		result.put("default", benchmark.measure(options.get("boot-jar"), List.of(), runs));
+		result.put("optimized", benchmark.measure(options.get("optimized-jar"),
+				splitJvmArgs(options.getOrDefault("optimized-jvm-args", "")), runs));
+
+		String line = new ObjectMapper().writeValueAsString(result);
+		System.out.println(line);
+		Path history = Path.of(options.getOrDefault("history", "startup-history.jsonl"));
+		if (history.getParent() != null) {
+			Files.createDirectories(history.getParent());
+		}
+		Files.writeString(history, line + System.lineSeparator(), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		System.out.println("Result appended to " + history);
+	}
+
+	/**
+	 * This function is used to start the given jar several times and to summarize
+	 * the time to the first successful account read.
+	 *
+	 * @param jar
+	 * @param jvmArgs
+	 * @param runs
+	 * @return map with the min, median and max milliseconds and every sample
+	 * @throws Exception
+	 */
+	Map<String, Object> measure(String jar, List<String> jvmArgs, int runs) throws Exception {
+		if (jar == null || !new File(jar).isFile()) {
+			throw new IllegalArgumentException("Jar not found: " + jar);
+		}
+		long[] samples = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			samples[i] = timeToFirstRead(jar, jvmArgs);
+			System.out.println(jar + " run " + (i + 1) + ": " + samples[i] + " ms");
+		}
+		long[] sorted = samples.clone();
+		Arrays.sort(sorted);
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("jar", new File(jar).getName());
+		summary.put("jvmArgs", jvmArgs);
+		summary.put("minMillis", sorted[0]);
+		summary.put("medianMillis", sorted[runs / 2]);
+		summary.put("maxMillis", sorted[runs - 1]);
+		summary.put("samplesMillis", samples);
+		return summary;
+	}
+
+	private long timeToFirstRead(String jar, List<String> jvmArgs) throws Exception {
+		int port = freePort();
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArgs);
+		command.add("-Dserver.port=" + port);
+		command.add("-jar");
+		command.add(jar);
+		String baseUrl = "http://localhost:" + port + "/v1/accounts";
+
+		long started = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+		try {
+			long deadline = started + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+			boolean created = false;
+			while (System.nanoTime() < deadline) {
+				if (!process.isAlive()) {
+					throw new IllegalStateException("Application exited with " + process.exitValue());
+				}
+				try {
+					if (!created) {
+						created = createAccount(baseUrl);
+					}
+					if (created && getAccount(baseUrl) == 200) {
+						return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+					}
+				} catch (IOException e) {
+					// Not listening yet
+				}
+				Thread.sleep(POLL_INTERVAL_MILLIS);
+			}
+			throw new IllegalStateException("No successful account read within " + TIMEOUT_MILLIS + " ms");
+		} finally {
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private boolean createAccount(String baseUrl) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers
+						.ofString("{\"accountId\":\"" + ACCOUNT_ID + "\",\"balance\":100}"))
+				.build();
+		int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+		return status == 201;
+	}
+
+	private int getAccount(String baseUrl) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + ACCOUNT_ID)).GET().build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private static int freePort() {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static List<String> splitJvmArgs(String jvmArgs) {
+		return jvmArgs.isBlank() ? List.of() : List.of(jvmArgs.trim().split("\\s+"));
+	}
+}
@@ -0,0 +1,57 @@
+package com.dws.loadgen;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipfian distribution of the accounts, account 0 is the most popular. Uses the
+ * constant time generator of Gray et al. "Quickly generating billion-record
+ * synthetic databases", only the zeta constant is computed upfront.
+ */
+class ZipfianKeySelector implements KeySelector {
+
+	private final int items;
+
+	private final double theta;
+
+	private final double alpha;
+
+	private final double zetan;
+
+	private final double eta;
+
+	ZipfianKeySelector(int items, double theta) {
+		if (items < 3) {
+			throw new IllegalArgumentException("Zipfian distribution needs at least 3 accounts");
+		}
+		if (theta <= 0 || theta == 1) {
+			throw new IllegalArgumentException("Zipf exponent must be positive and different from 1");
+		}
+		this.items = items;
+		this.theta = theta;
+		this.zetan = zeta(items, theta);
+		this.alpha = 1.0 / (1.0 - theta);
+		this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+	}
+
+	@Override
+	public int nextAccount(SplittableRandom random) {
+		double u = random.nextDouble();
+		double uz = u * zetan;
+		if (uz < 1.0) {
+			return 0;
+		}
+		if (uz < 1.0 + Math.pow(0.5, theta)) {
+			return 1;
+		}
+		int item = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+		return Math.min(item, items - 1);
+	}
+
+	private static double zeta(int n, double theta) {
+		double sum = 0;
+		for (int i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,53 @@
+package com.dws.loadgen;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class KeySelectorTest {
+
+	private static final int ACCOUNTS = 1000;
+
+	private static final int SAMPLES = 100_000;
+
+	/**
+	 * This function is used for test zipfian selection stays in range and favours
+	 * the first accounts
+	 */
+	@Test
+	void zipfianFavoursFirstAccounts() {
+		KeySelector keySelector = KeySelector.of("zipfian", ACCOUNTS, 0.99);
+		SplittableRandom random = new SplittableRandom(42);
+		int[] counts = new int[ACCOUNTS];
+		for (int i = 0; i < SAMPLES; i++) {
+			int account = keySelector.nextAccount(random);
+			assertThat(account).isBetween(0, ACCOUNTS - 1);
+			counts[account]++;
+		}
+		assertThat(counts[0]).isGreaterThan(counts[1]);
+		assertThat(counts[1]).isGreaterThan(counts[100]);
+		// With exponent 0.99 the first 10% accounts get most of the traffic
+		int firstTenPercent = 0;
+		for (int i = 0; i < ACCOUNTS / 10; i++) {
+			firstTenPercent += counts[i];
+		}
+		assertThat(firstTenPercent).isGreaterThan(SAMPLES / 2);
+	}
+
+	/**
+	 * This function is used for test transfer pair is never the same account
+	 */
+	@Test
+	void pairUsesTwoDifferentAccounts() {
+		SplittableRandom random = new SplittableRandom(42);
+		for (String distribution : new String[] { "uniform", "zipfian", "hotpair" }) {
+			KeySelector keySelector = KeySelector.of(distribution, ACCOUNTS, 0.99);
+			for (int i = 0; i < 1000; i++) {
+				int[] pair = keySelector.nextPair(random);
+				assertThat(pair[0]).isNotEqualTo(pair[1]);
+			}
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransactionAbortedException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.CachedClock;
+import com.dws.challenge.service.IAccountsService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accounts service used in cluster mode. Accounts are partitioned across the
+ * nodes by consistent hashing, any node accepts a request and routes it to the
+ * node owning the account. Transfer between two partitions is done with a two
+ * phase reserve / commit protocol coordinated by the node receiving the
+ * request.
+ */
+@Slf4j
+@Primary
+@Profile("cluster")
+@Service("clusterAccountsService")
+public class ClusterAccountsService implements IAccountsService {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private ClusterRpcClient clusterRpcClient;
+
+	@Autowired
+	private ConsistentHashRing consistentHashRing;
+
+	@Autowired
+	private TransferParticipant transferParticipant;
+
+	@Autowired
+	private TransactionDecisions transactionDecisions;
+
+	@Autowired
+	private CachedClock cachedClock;
+
+	@Autowired
+	private ClusterFxRates clusterFxRates;
+
+	@Value("${cluster.self}")
+	private String self;
+
+	@Value("${cluster.commit-attempts:3}")
+	private int commitAttempts;
+
+	/**
+	 * This function is used for create account on the node owning the account
+	 * 
+	 * @param account - account information
+	 * @return void
+	 * @throws DuplicateAccountIdException
+	 */
+	@Override
+	public void createAccount(Account account) {
+		String owner = consistentHashRing.ownerOf(account.getAccountId());
+		if (isSelf(owner)) {
+			accountsService.createAccount(account);
+		} else {
+			clusterRpcClient.createAccount(owner, account);
+		}
+	}
+
+	/**
+	 * This function is used for get account information from the node owning the
+	 * account
+	 * 
+	 * @param accountId - account id
+	 * @return Account - Account information
+	 * @throws AccountIdNotExistException
+	 */
+	@Override
+	public Account getAccount(String accountId) {
+		String owner = consistentHashRing.ownerOf(accountId);
+		return isSelf(owner) ? accountsService.getAccount(accountId) : clusterRpcClient.getAccount(owner, accountId);
+	}
+
+	/**
+	 * This function is used for clear accounts from all the cluster nodes
+	 * 
+	 * @param NA
+	 * @return void
+	 * @throws NA
+	 */
+	@Override
+	public void clearAccounts() {
+		for (String node : consistentHashRing.getNodes()) {
+			if (isSelf(node)) {
+				accountsService.clearAccounts();
+			} else {
+				clusterRpcClient.clearAccounts(node);
+			}
+		}
+	}
+
+	/**
+	 * This function is used for get the version of the accounts of this node.
+	 * Versions are given by each node, the accounts read from the other nodes
+	 * have no version.
+	 * 
+	 * @param NA
+	 * @return long - version of the local accounts
+	 * @throws NA
+	 */
+	@Override
+	public long getVersion() {
+		return accountsService.getVersion();
+	}
+
+	/**
+	 * This function is used for transfer amount from to account. When both the
+	 * accounts are in the same partition the owner node does a local transfer,
+	 * otherwise the amount is reserved on the from account owner, the credit is
+	 * prepared on the to account owner and both are committed. The receipt of a
+	 * transfer between partitions has the transaction id and no balances.
+	 * 
+	 * @param accountFromId - account id need to be withdraw amount
+	 * @param accountToId   - account id need to be deposit amount
+	 * @param amount        - amount need to be withdraw and deposit in account
+	 * @return TransferReceipt - receipt of the committed transfer
+	 * @throws AccountIdNotExistException
+	 * @throws InsufficientBalanceException
+	 * @throws NodeUnavailableException
+	 * @throws TransactionAbortedException
+	 */
+	@Override
+	public TransferReceipt transfer(String accountFromId, String accountToId, BigDecimal amount)
+			throws AccountIdNotExistException, InsufficientBalanceException {
+		String fromOwner = consistentHashRing.ownerOf(accountFromId);
+		String toOwner = consistentHashRing.ownerOf(accountToId);
+
+		// Both accounts in the same partition, no coordination required
+		if (fromOwner.equals(toOwner)) {
+			if (isSelf(fromOwner)) {
+				return accountsService.transfer(accountFromId, accountToId, amount);
+			}
+			return clusterRpcClient.transfer(fromOwner, accountFromId, accountToId, amount);
+		}
+
+		String transactionId = UUID.randomUUID().toString();
+		// Phase one, reserve amount on from account
+		String currency;
+		try {
+			currency = reserve(fromOwner, transactionId, accountFromId, amount);
+		} catch (RuntimeException e) {
+			// The reserve may have been applied before the error (time out), the abort
+			// refunds it or keeps a late reserve from being applied
+			abort(transactionId, fromOwner);
+			throw e;
+		}
+		try {
+			// Phase one, prepare credit on to account, converted by its owner
+			prepareCredit(toOwner, transactionId, accountToId, amount, currency, accountFromId);
+		} catch (RuntimeException e) {
+			// While preparing any error occurred need to release the reservation
+			abort(transactionId, fromOwner, toOwner);
+			if (e instanceof TransactionAbortedException) {
+				// The rates of this node may be the older ones
+				clusterFxRates.refresh();
+			}
+			throw e;
+		}
+
+		// Both participants voted for commit. A participant that timed out waiting
+		// may have asked for the decision already and made it an abort.
+		if (transactionDecisions.decide(transactionId, TransactionDecision.COMMIT) != TransactionDecision.COMMIT) {
+			abort(transactionId, fromOwner, toOwner);
+			throw new TransactionAbortedException("Transaction " + transactionId + " timed out before commit!");
+		}
+		// Phase two. Credit is committed first, the reservation is only released
+		// afterwards. A participant not reached completes the commit on recovery.
+		commit(toOwner, transactionId);
+		commit(fromOwner, transactionId);
+
+		// return receipt after successful transfer amount from to account
+		return new TransferReceipt(transactionId, accountFromId, accountToId, amount, currency, null, null, null,
+				null, cachedClock.millis());
+	}
+
+	private String reserve(String node, String transactionId, String accountId, BigDecimal amount) {
+		if (isSelf(node)) {
+			return transferParticipant.reserve(transactionId, self, accountId, amount);
+		}
+		return clusterRpcClient.reserve(node, transactionId, self, accountId, amount);
+	}
+
+	// Sent with the FX rates version of this node, the credit is converted with
+	// the same rates or refused
+	private void prepareCredit(String node, String transactionId, String accountId, BigDecimal amount,
+			String currency, String accountFromId) {
+		long fxVersion = clusterFxRates.getVersion();
+		if (isSelf(node)) {
+			transferParticipant.prepareCredit(transactionId, self, accountId, amount, currency, fxVersion,
+					accountFromId);
+		} else {
+			clusterRpcClient.prepareCredit(node, transactionId, self, accountId, amount, currency, fxVersion,
+					accountFromId);
+		}
+	}
+
+	// The abort decision is recorded first, a participant not reached aborts on
+	// recovery
+	private void abort(String transactionId, String... nodes) {
+		transactionDecisions.decide(transactionId, TransactionDecision.ABORT);
+		for (String node : nodes) {
+			try {
+				if (isSelf(node)) {
+					transferParticipant.abort(transactionId);
+				} else {
+					clusterRpcClient.abort(node, transactionId);
+				}
+			} catch (RuntimeException e) {
+				log.error("Transaction {} could not be aborted on node {}", transactionId, node, e);
+			}
+		}
+	}
+
+	// Commit is idempotent on the participant so it is retried when the node is
+	// not reachable. The commit decision is recorded, a participant still not
+	// reached asks for it on recovery.
+	private void commit(String node, String transactionId) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				if (isSelf(node)) {
+					transferParticipant.commit(transactionId);
+				} else {
+					clusterRpcClient.commit(node, transactionId);
+				}
+				return;
+			} catch (RuntimeException e) {
+				if (attempt >= commitAttempts) {
+					log.error("Transaction {} is left to the recovery of node {}", transactionId, node, e);
+					return;
+				}
+			}
+		}
+	}
+
+	private boolean isSelf(String node) {
+		return self.equals(node);
+	}
+}
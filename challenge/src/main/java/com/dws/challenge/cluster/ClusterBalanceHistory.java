@@ -0,0 +1,51 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.HistoryDisabledException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.history.BalanceHistory;
+
+/**
+ * Balance history in cluster mode. Every node records the changes of its own
+ * accounts only, a query is answered by the node owning the account.
+ */
+@Component
+@Profile("cluster")
+public class ClusterBalanceHistory {
+
+	@Autowired
+	private BalanceHistory balanceHistory;
+
+	@Autowired
+	private ClusterRpcClient clusterRpcClient;
+
+	@Autowired
+	private ConsistentHashRing consistentHashRing;
+
+	@Value("${cluster.self}")
+	private String self;
+
+	/**
+	 * This function is used for get the balance of an account at a time from the
+	 * history of the node owning the account
+	 *
+	 * @param accountId - account id
+	 * @param time      - epoch millis
+	 * @return BigDecimal - balance after the last change at or before time
+	 * @throws AccountIdNotExistException
+	 * @throws HistoryDisabledException
+	 * @throws NodeUnavailableException
+	 */
+	public BigDecimal balanceAt(String accountId, long time) {
+		String owner = consistentHashRing.ownerOf(accountId);
+		return self.equals(owner) ? balanceHistory.balanceAt(accountId, time)
+				: clusterRpcClient.balanceAt(owner, accountId, time);
+	}
+}
@@ -0,0 +1,19 @@
+package com.dws.challenge.cluster;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("cluster")
+public class ClusterConfig {
+
+	@Bean
+	public ConsistentHashRing consistentHashRing(@Value("${cluster.nodes}") String[] nodes,
+			@Value("${cluster.virtual-nodes:128}") int virtualNodes) {
+		return new ConsistentHashRing(Arrays.asList(nodes), virtualNodes);
+	}
+}
@@ -0,0 +1,138 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransactionAbortedException;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.fx.FxRates;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * FX rates in cluster mode. Rates are updated by one node, the first of the
+ * cluster nodes, so table versions are given in one place. An update received
+ * by another node is forwarded to it. The new table is sent with its version to
+ * all the other nodes, a node keeps the highest version it received.
+ *
+ * The coordinator of a cross partition transfer sends its table version with
+ * the credit. The to account owner converts only with the same version, it
+ * fetches the table of the rates node when its own is older and refuses the
+ * credit when the versions still differ.
+ */
+@Slf4j
+@Component
+@Profile("cluster")
+public class ClusterFxRates {
+
+	@Autowired
+	private FxRates fxRates;
+
+	@Autowired
+	private ClusterRpcClient clusterRpcClient;
+
+	@Autowired
+	private ConsistentHashRing consistentHashRing;
+
+	@Value("${cluster.self}")
+	private String self;
+
+	/**
+	 * This function is used for add or replace rates on the rates node and send
+	 * the new table to all the nodes
+	 *
+	 * @param rates - units of each currency for one unit of the base currency
+	 * @return FxRateTable - published table
+	 * @throws CurrencyConversionException
+	 * @throws NodeUnavailableException
+	 */
+	public FxRateTable publish(Map<String, BigDecimal> rates) {
+		String ratesNode = ratesNode();
+		if (!self.equals(ratesNode)) {
+			FxRateTable table = clusterRpcClient.publishRates(ratesNode, rates);
+			fxRates.install(table);
+			return table;
+		}
+		FxRateTable table = fxRates.publish(rates);
+		for (String node : consistentHashRing.getNodes()) {
+			if (self.equals(node)) {
+				continue;
+			}
+			try {
+				clusterRpcClient.installRates(node, table);
+			} catch (RuntimeException e) {
+				// The node gets the table on its next credit for a newer coordinator
+				log.warn("FX rates version {} could not be sent to node {}", table.getVersion(), node, e);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * This function is used for install a table sent by the rates node
+	 *
+	 * @param table - table with its version
+	 * @return FxRateTable - current table after the install
+	 */
+	public FxRateTable install(FxRateTable table) {
+		return fxRates.install(table);
+	}
+
+	/**
+	 * This function is used for get the version of the table of this node
+	 *
+	 * @return long - table version
+	 */
+	public long getVersion() {
+		return fxRates.getTable().getVersion();
+	}
+
+	/**
+	 * This function is used for check the table of this node has the version of
+	 * the coordinator, after fetching the table of the rates node when it is
+	 * older
+	 *
+	 * @param transactionId - transaction of the credit
+	 * @param version       - table version of the coordinator
+	 * @throws TransactionAbortedException when the versions differ
+	 */
+	public void checkVersion(String transactionId, long version) {
+		FxRateTable table = fxRates.getTable();
+		if (table.getVersion() < version) {
+			table = refresh();
+		}
+		if (table.getVersion() != version) {
+			throw new TransactionAbortedException("FX rates version " + version + " of the coordinator is not version "
+					+ table.getVersion() + " of node " + self + ", transaction " + transactionId + " is aborted!");
+		}
+	}
+
+	/**
+	 * This function is used for install the table of the rates node, when it is
+	 * newer. A rates node not reachable leaves the table unchanged.
+	 *
+	 * @return FxRateTable - current table after the refresh
+	 */
+	public FxRateTable refresh() {
+		String ratesNode = ratesNode();
+		if (!self.equals(ratesNode)) {
+			try {
+				return fxRates.install(clusterRpcClient.getRates(ratesNode));
+			} catch (RuntimeException e) {
+				log.warn("FX rates could not be read from node {}", ratesNode, e);
+			}
+		}
+		return fxRates.getTable();
+	}
+
+	private String ratesNode() {
+		return consistentHashRing.getNodes().get(0);
+	}
+}
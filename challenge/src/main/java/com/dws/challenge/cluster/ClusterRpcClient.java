@@ -0,0 +1,186 @@
+package com.dws.challenge.cluster;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalanceAsOf;
+import com.dws.challenge.domain.TransferAmount;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.ErrorResponse;
+import com.dws.challenge.exception.HistoryDisabledException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransactionAbortedException;
+import com.dws.challenge.fx.FxRateTable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Internal RPC client used by a node to call the other cluster nodes. Calls are
+ * plain JSON over keep-alive HTTP connections and the errors of the remote node
+ * are mapped back to the same exceptions the local service throws. Every call
+ * carries the cluster secret.
+ */
+@Component
+@Profile("cluster")
+public class ClusterRpcClient {
+
+	private static final String BASE_PATH = "/internal/cluster";
+
+	private final RestClient restClient;
+
+	private final ObjectMapper objectMapper;
+
+	public ClusterRpcClient(RestClient.Builder restClientBuilder, ObjectMapper objectMapper,
+			@Value("${cluster.rpc-timeout-ms:2000}") long timeoutMs, @Value("${cluster.secret:}") String secret) {
+		HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(timeoutMs)).build();
+		JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+		requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+		this.restClient = restClientBuilder.requestFactory(requestFactory)
+				.defaultHeader(ClusterSecretInterceptor.SECRET_HEADER, secret).build();
+		this.objectMapper = objectMapper;
+	}
+
+	public void createAccount(String node, Account account) {
+		call(node, () -> restClient.post().uri(node + BASE_PATH + "/accounts").contentType(MediaType.APPLICATION_JSON)
+				.body(account).retrieve().onStatus(HttpStatusCode::isError, (request, response) -> {
+					throw toException(node, response, DuplicateAccountIdException::new);
+				}).toBodilessEntity());
+	}
+
+	public Account getAccount(String node, String accountId) {
+		return call(node, () -> restClient.get().uri(node + BASE_PATH + "/accounts/{accountId}", accountId).retrieve()
+				.onStatus(HttpStatusCode::isError, (request, response) -> {
+					throw toException(node, response, AccountIdNotExistException::new);
+				}).body(Account.class));
+	}
+
+	public BigDecimal balanceAt(String node, String accountId, long time) {
+		return call(node, () -> restClient.get()
+				.uri(node + BASE_PATH + "/accounts/{accountId}/balance?time={time}", accountId, time).retrieve()
+				.onStatus(HttpStatusCode::isError, (request, response) -> {
+					throw toException(node, response, AccountIdNotExistException::new);
+				}).body(BalanceAsOf.class)).getBalance();
+	}
+
+	public void clearAccounts(String node) {
+		call(node, () -> restClient.delete().uri(node + BASE_PATH + "/accounts").retrieve().toBodilessEntity());
+	}
+
+	public TransferReceipt transfer(String node, String accountFromId, String accountToId, BigDecimal amount) {
+		return post(node, "/transfer", new TransferAmount(accountFromId, accountToId, amount), TransferReceipt.class);
+	}
+
+	public String reserve(String node, String transactionId, String coordinator, String accountId,
+			BigDecimal amount) {
+		return post(node, "/transactions/" + transactionId + "/reserve",
+				new ParticipantRequest(accountId, amount, null, coordinator), ParticipantRequest.class).getCurrency();
+	}
+
+	public void prepareCredit(String node, String transactionId, String coordinator, String accountId,
+			BigDecimal amount, String currency, long fxVersion, String accountFromId) {
+		post(node, "/transactions/" + transactionId + "/prepare-credit",
+				new ParticipantRequest(accountId, amount, currency, coordinator, fxVersion, accountFromId));
+	}
+
+	public void commit(String node, String transactionId) {
+		post(node, "/transactions/" + transactionId + "/commit", null);
+	}
+
+	public void abort(String node, String transactionId) {
+		post(node, "/transactions/" + transactionId + "/abort", null);
+	}
+
+	public TransactionDecision decision(String node, String transactionId) {
+		return post(node, "/transactions/" + transactionId + "/decision", null, TransactionDecision.class);
+	}
+
+	public FxRateTable publishRates(String node, Map<String, BigDecimal> rates) {
+		return call(node, () -> restClient.put().uri(node + BASE_PATH + "/fx/rates")
+				.contentType(MediaType.APPLICATION_JSON).body(rates).retrieve()
+				.onStatus(HttpStatusCode::isError, (request, response) -> {
+					throw toException(node, response, CurrencyConversionException::new);
+				}).body(FxRateTable.class));
+	}
+
+	public void installRates(String node, FxRateTable table) {
+		post(node, "/fx/table", table);
+	}
+
+	public FxRateTable getRates(String node) {
+		return call(node, () -> restClient.get().uri(node + BASE_PATH + "/fx/rates").retrieve()
+				.onStatus(HttpStatusCode::isError, (request, response) -> {
+					throw toException(node, response, CurrencyConversionException::new);
+				}).body(FxRateTable.class));
+	}
+
+	private void post(String node, String path, Object body) {
+		call(node, () -> retrieve(node, path, body).toBodilessEntity());
+	}
+
+	private <T> T post(String node, String path, Object body, Class<T> responseType) {
+		return call(node, () -> retrieve(node, path, body).body(responseType));
+	}
+
+	private RestClient.ResponseSpec retrieve(String node, String path, Object body) {
+		RestClient.RequestBodySpec request = restClient.post().uri(node + BASE_PATH + path);
+		if (body != null) {
+			request.contentType(MediaType.APPLICATION_JSON).body(body);
+		}
+		return request.retrieve().onStatus(HttpStatusCode::isError, (req, response) -> {
+			throw toException(node, response, InsufficientBalanceException::new);
+		});
+	}
+
+	private <T> T call(String node, Supplier<T> call) {
+		try {
+			return call.get();
+		} catch (ResourceAccessException e) {
+			throw new NodeUnavailableException("Node " + node + " is not reachable", e);
+		}
+	}
+
+	// Map the error response of the remote node to the exception of the local
+	// service, bad request meaning depends on the called operation
+	private RuntimeException toException(String node, ClientHttpResponse response,
+			Function<String, RuntimeException> badRequest) throws IOException {
+		String message;
+		try {
+			message = objectMapper.readValue(response.getBody(), ErrorResponse.class).getMessage();
+		} catch (IOException e) {
+			message = "Node " + node + " responded with " + response.getStatusCode();
+		}
+		if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+			return new AccountIdNotExistException(message);
+		}
+		if (response.getStatusCode().isSameCodeAs(HttpStatus.BAD_REQUEST)) {
+			return badRequest.apply(message);
+		}
+		if (response.getStatusCode().isSameCodeAs(HttpStatus.CONFLICT)) {
+			return new TransactionAbortedException(message);
+		}
+		if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_IMPLEMENTED)) {
+			return new HistoryDisabledException(message);
+		}
+		return new NodeUnavailableException(message, null);
+	}
+}
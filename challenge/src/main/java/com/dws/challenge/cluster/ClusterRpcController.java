@@ -0,0 +1,141 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalanceAsOf;
+import com.dws.challenge.domain.TransferAmount;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.fx.FxRates;
+import com.dws.challenge.history.BalanceHistory;
+import com.dws.challenge.service.AccountsService;
+
+import jakarta.validation.Valid;
+
+/**
+ * Internal endpoints called by the other cluster nodes. All operations are
+ * applied on the local partition only. Calls without the cluster secret are
+ * rejected by {@link ClusterSecretInterceptor}.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+@Profile("cluster")
+public class ClusterRpcController {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransferParticipant transferParticipant;
+
+	@Autowired
+	private TransactionDecisions transactionDecisions;
+
+	@Autowired
+	private ClusterFxRates clusterFxRates;
+
+	@Autowired
+	private FxRates fxRates;
+
+	@Autowired
+	private BalanceHistory balanceHistory;
+
+	@PostMapping(path = "/accounts", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+		accountsService.createAccount(account);
+		return new ResponseEntity<>(HttpStatus.CREATED);
+	}
+
+	@GetMapping(path = "/accounts/{accountId}")
+	public Account getAccount(@PathVariable("accountId") String accountId) {
+		return accountsService.getAccount(accountId);
+	}
+
+	@GetMapping(path = "/accounts/{accountId}/balance")
+	public BalanceAsOf getBalanceAt(@PathVariable("accountId") String accountId, @RequestParam("time") long time) {
+		return new BalanceAsOf(accountId, Instant.ofEpochMilli(time), balanceHistory.balanceAt(accountId, time));
+	}
+
+	@DeleteMapping(path = "/accounts")
+	public ResponseEntity<Object> clearAccounts() {
+		accountsService.clearAccounts();
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<TransferReceipt> transfer(@RequestBody @Valid TransferAmount transferAmount) {
+		TransferReceipt receipt = accountsService.transfer(transferAmount.getAccountFromId(),
+				transferAmount.getAccountToId(), transferAmount.getAmount());
+		return new ResponseEntity<>(receipt, HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/transactions/{transactionId}/reserve", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> reserve(@PathVariable("transactionId") String transactionId,
+			@RequestBody @Valid ParticipantRequest request) {
+		String currency = transferParticipant.reserve(transactionId, request.getCoordinator(), request.getAccountId(),
+				request.getAmount());
+		return new ResponseEntity<>(new ParticipantRequest(request.getAccountId(), request.getAmount(), currency),
+				HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/transactions/{transactionId}/prepare-credit", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> prepareCredit(@PathVariable("transactionId") String transactionId,
+			@RequestBody @Valid ParticipantRequest request) {
+		transferParticipant.prepareCredit(transactionId, request.getCoordinator(), request.getAccountId(),
+				request.getAmount(), request.getCurrency(), request.getFxVersion(), request.getAccountFromId());
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/transactions/{transactionId}/commit")
+	public ResponseEntity<Object> commit(@PathVariable("transactionId") String transactionId) {
+		transferParticipant.commit(transactionId);
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/transactions/{transactionId}/abort")
+	public ResponseEntity<Object> abort(@PathVariable("transactionId") String transactionId) {
+		transferParticipant.abort(transactionId);
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	// Asked by a participant in doubt, an undecided transaction is aborted
+	@PostMapping(path = "/transactions/{transactionId}/decision")
+	public TransactionDecision decision(@PathVariable("transactionId") String transactionId) {
+		return transactionDecisions.decide(transactionId, TransactionDecision.ABORT);
+	}
+
+	// Update forwarded to the rates node
+	@PutMapping(path = "/fx/rates", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public FxRateTable publishRates(@RequestBody Map<String, BigDecimal> rates) {
+		return clusterFxRates.publish(rates);
+	}
+
+	// Table sent by the rates node, ignored when not newer
+	@PostMapping(path = "/fx/table", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public FxRateTable installRates(@RequestBody FxRateTable table) {
+		return clusterFxRates.install(table);
+	}
+
+	@GetMapping(path = "/fx/rates")
+	public FxRateTable getRates() {
+		return fxRates.getTable();
+	}
+}
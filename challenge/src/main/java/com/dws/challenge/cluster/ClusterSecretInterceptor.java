@@ -0,0 +1,44 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.dws.challenge.exception.UnauthorizedNodeException;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Rejects the internal cluster calls not sent by a cluster node. The nodes
+ * share a secret sent in the X-Cluster-Secret header of every internal call.
+ */
+@Component
+@Profile("cluster")
+public class ClusterSecretInterceptor implements HandlerInterceptor {
+
+	public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+	private final byte[] secret;
+
+	public ClusterSecretInterceptor(@Value("${cluster.secret:}") String secret) {
+		if (secret.isBlank()) {
+			throw new IllegalStateException("cluster.secret must be set in cluster mode");
+		}
+		this.secret = secret.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		String header = request.getHeader(SECRET_HEADER);
+		// Compared in constant time, the time taken tells nothing about the secret
+		if (header == null || !MessageDigest.isEqual(secret, header.getBytes(StandardCharsets.UTF_8))) {
+			throw new UnauthorizedNodeException("Internal cluster call without a valid cluster secret!");
+		}
+		return true;
+	}
+}
@@ -0,0 +1,20 @@
+package com.dws.challenge.cluster;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@Profile("cluster")
+public class ClusterWebConfig implements WebMvcConfigurer {
+
+	@Autowired
+	private ClusterSecretInterceptor clusterSecretInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(clusterSecretInterceptor).addPathPatterns("/internal/cluster/**");
+	}
+}
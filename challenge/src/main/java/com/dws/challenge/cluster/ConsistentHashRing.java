@@ -0,0 +1,64 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring used to partition the accounts across the cluster
+ * nodes. Every node is placed on the ring several times (virtual nodes) so the
+ * accounts are spread evenly and adding a node moves only its own share of
+ * accounts.
+ */
+public class ConsistentHashRing {
+
+	private final TreeMap<Long, String> ring = new TreeMap<>();
+
+	private final List<String> nodes;
+
+	public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("Cluster must have at least one node");
+		}
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+		for (String node : nodes) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(node + "#" + i), node);
+			}
+		}
+	}
+
+	/**
+	 * This function is used for find the node owning the account
+	 * 
+	 * @param accountId - account id
+	 * @return String - node owning the account
+	 */
+	public String ownerOf(String accountId) {
+		Map.Entry<Long, String> entry = ring.ceilingEntry(hash(accountId));
+		// Wrap around to the first node of the ring
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	// 64 bit FNV-1a followed by the murmur3 finalizer to spread close keys
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
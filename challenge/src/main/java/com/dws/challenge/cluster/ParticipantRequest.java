@@ -0,0 +1,63 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+/**
+ * Request sent by the transfer coordinator to the node owning one side of a
+ * cross partition transfer. The currency is the currency of the amount, it is
+ * returned by the reserve and sent with the credit. The coordinator is the node
+ * the participant asks for the decision of a transaction left in doubt. The FX
+ * version is the rates table version of the coordinator, sent with the credit.
+ * The from account id is sent with the credit too, the to account owner
+ * publishes the transfer once committed.
+ */
+@Data
+public class ParticipantRequest {
+
+	@NotNull
+	@NotEmpty
+	private final String accountId;
+
+	@NotNull
+	@Min(value = 1, message = "Amount must be natural number.")
+	private final BigDecimal amount;
+
+	@Pattern(regexp = "[A-Z]{3}", message = "Currency must be an ISO 4217 code.")
+	private final String currency;
+
+	private final String coordinator;
+
+	private final Long fxVersion;
+
+	private final String accountFromId;
+
+	public ParticipantRequest(String accountId, BigDecimal amount, String currency) {
+		this(accountId, amount, currency, null, null, null);
+	}
+
+	public ParticipantRequest(String accountId, BigDecimal amount, String currency, String coordinator) {
+		this(accountId, amount, currency, coordinator, null, null);
+	}
+
+	@JsonCreator
+	public ParticipantRequest(@JsonProperty("accountId") String accountId,
+			@JsonProperty("amount") BigDecimal amount, @JsonProperty("currency") String currency,
+			@JsonProperty("coordinator") String coordinator, @JsonProperty("fxVersion") Long fxVersion,
+			@JsonProperty("accountFromId") String accountFromId) {
+		this.accountId = accountId;
+		this.amount = amount;
+		this.currency = currency;
+		this.coordinator = coordinator;
+		this.fxVersion = fxVersion;
+		this.accountFromId = accountFromId;
+	}
+}
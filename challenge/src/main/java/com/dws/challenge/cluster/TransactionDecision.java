@@ -0,0 +1,8 @@
+package com.dws.challenge.cluster;
+
+/**
+ * Outcome of a transfer between partitions, decided once by the coordinator.
+ */
+public enum TransactionDecision {
+	COMMIT, ABORT
+}
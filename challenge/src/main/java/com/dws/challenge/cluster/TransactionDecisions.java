@@ -0,0 +1,49 @@
+package com.dws.challenge.cluster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decisions of the transfers coordinated by this node. The first decision of a
+ * transaction is final: a participant in doubt asking for an undecided
+ * transaction makes it an abort, and the coordinator then can not commit it.
+ * Decisions are kept for the transaction retention, long enough for the
+ * participants to resolve their prepared transactions.
+ */
+@Component
+@Profile("cluster")
+public class TransactionDecisions {
+
+	@Value("${cluster.transaction-retention-ms:600000}")
+	private long retentionMs;
+
+	private final Map<String, Decided> decisions = new ConcurrentHashMap<>();
+
+	/**
+	 * This function is used for decide the outcome of a transaction
+	 * 
+	 * @param transactionId - transfer transaction id
+	 * @param decision      - outcome to take when the transaction is undecided
+	 * @return TransactionDecision - final outcome of the transaction
+	 */
+	public TransactionDecision decide(String transactionId, TransactionDecision decision) {
+		return decisions.computeIfAbsent(transactionId, id -> new Decided(decision, System.currentTimeMillis()))
+				.decision();
+	}
+
+	/**
+	 * This function is used for forget the decisions older than the retention
+	 * 
+	 * @param now - epoch millis
+	 */
+	public void expire(long now) {
+		decisions.values().removeIf(decided -> now - decided.decidedAt() > retentionMs);
+	}
+
+	private record Decided(TransactionDecision decision, long decidedAt) {
+	}
+}
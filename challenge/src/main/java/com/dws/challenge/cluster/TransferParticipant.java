@@ -0,0 +1,336 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.events.TransferEventRingBuffer;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.TransactionAbortedException;
+import com.dws.challenge.exception.UnauthorizedNodeException;
+import com.dws.challenge.service.AccountsService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Participant side of the two phase transfer between partitions. The from
+ * account owner reserves the amount (withdraw is done and kept aside) and the
+ * to account owner prepares the credit, converted to the currency of the to
+ * account with its own FX rates. The to account owner publishes the transfer
+ * to its event stream once the credit is committed.
+ *
+ * Every call is idempotent per transaction id: a retried reserve or prepare is
+ * applied once, an abort received first leaves a tombstone so a late reserve is
+ * refused, and a transaction is only resolved once its deposit succeeded.
+ * Resolved transactions are forgotten after the transaction retention. A
+ * transaction still prepared after the transaction timeout is resolved by
+ * asking its coordinator for the decision, an undecided one is aborted.
+ */
+@Slf4j
+@Service
+@Profile("cluster")
+public class TransferParticipant {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private ClusterRpcClient clusterRpcClient;
+
+	@Autowired
+	private ConsistentHashRing consistentHashRing;
+
+	@Autowired
+	private TransactionDecisions transactionDecisions;
+
+	@Autowired
+	private ClusterFxRates clusterFxRates;
+
+	@Autowired
+	private TransferEventRingBuffer transferEventRingBuffer;
+
+	@Value("${cluster.self}")
+	private String self;
+
+	@Value("${cluster.transaction-timeout-ms:30000}")
+	private long transactionTimeoutMs;
+
+	@Value("${cluster.transaction-retention-ms:600000}")
+	private long transactionRetentionMs;
+
+	@Value("${cluster.recovery-interval-ms:5000}")
+	private long recoveryIntervalMs;
+
+	private final Map<String, Transaction> transactions = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService recovery;
+
+	@PostConstruct
+	public void start() {
+		if (recoveryIntervalMs > 0) {
+			recovery = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "transfer-participant-recovery");
+				thread.setDaemon(true);
+				return thread;
+			});
+			recovery.scheduleWithFixedDelay(this::recover, recoveryIntervalMs, recoveryIntervalMs,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (recovery != null) {
+			recovery.shutdownNow();
+		}
+	}
+
+	/**
+	 * This function is used for reserve amount of transfer on from account
+	 *
+	 * @param transactionId - transfer transaction id
+	 * @param coordinator   - node coordinating the transfer
+	 * @param accountId     - account id need to be withdraw amount
+	 * @param amount        - amount need to be reserved
+	 * @return String - currency of the reserved amount
+	 * @throws AccountIdNotExistException
+	 * @throws InsufficientBalanceException
+	 * @throws TransactionAbortedException
+	 */
+	public String reserve(String transactionId, String coordinator, String accountId, BigDecimal amount)
+			throws AccountIdNotExistException, InsufficientBalanceException {
+		Transaction transaction = begin(transactionId, coordinator, accountId, false);
+		synchronized (transaction) {
+			if (transaction.state == State.NEW) {
+				try {
+					accountsService.withdraw(accountId, amount);
+				} catch (RuntimeException e) {
+					transaction.resolve(State.ABORTED);
+					throw e;
+				}
+				transaction.prepare(amount, accountsService.getAccount(accountId).getCurrency());
+			}
+			checkNotAborted(transactionId, transaction);
+			return transaction.currency;
+		}
+	}
+
+	/**
+	 * This function is used for prepare credit of transfer on to account
+	 *
+	 * @param transactionId - transfer transaction id
+	 * @param coordinator   - node coordinating the transfer
+	 * @param accountId     - account id need to be deposit amount
+	 * @param amount        - amount need to be deposit on commit
+	 * @param currency      - currency of the amount, null for the currency of
+	 *                      account
+	 * @param fxVersion     - FX rates version of the coordinator, null to convert
+	 *                      with the current rates
+	 * @param accountFromId - account id the amount is withdrawn from, null to not
+	 *                      publish the transfer
+	 * @throws AccountIdNotExistException
+	 * @throws CurrencyConversionException
+	 * @throws TransactionAbortedException when the FX rates versions differ
+	 */
+	public void prepareCredit(String transactionId, String coordinator, String accountId, BigDecimal amount,
+			String currency, Long fxVersion, String accountFromId) throws AccountIdNotExistException {
+		Transaction transaction = begin(transactionId, coordinator, accountId, true);
+		synchronized (transaction) {
+			if (transaction.state == State.NEW) {
+				BigDecimal credit;
+				try {
+					if (currency == null) {
+						// Validate account is present before voting for commit
+						accountsService.getAccount(accountId);
+						credit = amount;
+					} else {
+						// Converted with the rates of the coordinator only
+						if (fxVersion != null && !currency.equals(accountsService.getAccount(accountId).getCurrency())) {
+							clusterFxRates.checkVersion(transactionId, fxVersion);
+						}
+						// Validate account is present and the amount can be converted before
+						// voting for commit, the converted amount is deposited on commit
+						credit = accountsService.convertTo(accountId, amount, currency);
+					}
+				} catch (RuntimeException e) {
+					transaction.resolve(State.ABORTED);
+					throw e;
+				}
+				transaction.prepare(credit, currency);
+				transaction.transferred(accountFromId, amount);
+			}
+			checkNotAborted(transactionId, transaction);
+		}
+	}
+
+	/**
+	 * This function is used for commit prepared transfer. Credit is deposited and
+	 * published, reservation is released. The transaction stays prepared when the
+	 * deposit fails, a retry or the recovery deposits it again.
+	 *
+	 * @param transactionId - transfer transaction id
+	 * @throws TransactionAbortedException
+	 */
+	public void commit(String transactionId) {
+		Transaction transaction = transactions.get(transactionId);
+		if (transaction == null) {
+			return;
+		}
+		synchronized (transaction) {
+			if (transaction.state == State.PREPARED) {
+				if (transaction.credit) {
+					accountsService.deposit(transaction.accountId, transaction.amount);
+					if (transaction.accountFromId != null) {
+						transferEventRingBuffer.publish(transaction.accountFromId, transaction.accountId,
+								transaction.transferred);
+					}
+				}
+				transaction.resolve(State.COMMITTED);
+			}
+			checkNotAborted(transactionId, transaction);
+		}
+	}
+
+	/**
+	 * This function is used for abort prepared transfer. Reserved amount is
+	 * refunded to from account. An unknown transaction is recorded as aborted, a
+	 * reserve or prepare received later is refused.
+	 *
+	 * @param transactionId - transfer transaction id
+	 */
+	public void abort(String transactionId) {
+		Transaction transaction = begin(transactionId, null, null, false);
+		synchronized (transaction) {
+			if (transaction.state == State.COMMITTED) {
+				log.error("Transaction {} is committed and can not be aborted", transactionId);
+				return;
+			}
+			if (transaction.state == State.PREPARED && !transaction.credit) {
+				log.info("Refund reserved amount of transaction {} to {} account", transactionId,
+						transaction.accountId);
+				accountsService.deposit(transaction.accountId, transaction.amount);
+			}
+			transaction.resolve(State.ABORTED);
+		}
+	}
+
+	/**
+	 * This function is used for resolve the transactions prepared for longer than
+	 * the transaction timeout, and forget the ones resolved for longer than the
+	 * retention. A transaction whose coordinator can not be reached stays
+	 * prepared until the next run.
+	 */
+	void recover() {
+		long now = System.currentTimeMillis();
+		transactionDecisions.expire(now);
+		transactions.forEach((transactionId, transaction) -> {
+			if (transaction.resolvedAt > 0) {
+				if (now - transaction.resolvedAt > transactionRetentionMs) {
+					transactions.remove(transactionId, transaction);
+				}
+				return;
+			}
+			if (now - transaction.createdAt < transactionTimeoutMs) {
+				return;
+			}
+			try {
+				TransactionDecision decision = decisionOf(transaction.coordinator, transactionId);
+				log.warn("Transaction {} prepared for {} ms, resolved by its coordinator as {}", transactionId,
+						now - transaction.createdAt, decision);
+				if (decision == TransactionDecision.COMMIT) {
+					commit(transactionId);
+				} else {
+					abort(transactionId);
+				}
+			} catch (RuntimeException e) {
+				log.error("Transaction {} is still in doubt", transactionId, e);
+			}
+		});
+	}
+
+	private TransactionDecision decisionOf(String coordinator, String transactionId) {
+		if (self.equals(coordinator)) {
+			return transactionDecisions.decide(transactionId, TransactionDecision.ABORT);
+		}
+		return clusterRpcClient.decision(coordinator, transactionId);
+	}
+
+	private Transaction begin(String transactionId, String coordinator, String accountId, boolean credit) {
+		if (accountId != null && !consistentHashRing.getNodes().contains(coordinator)) {
+			throw new UnauthorizedNodeException("Coordinator " + coordinator + " is not a cluster node!");
+		}
+		return transactions.computeIfAbsent(transactionId,
+				id -> new Transaction(coordinator, accountId, credit, System.currentTimeMillis()));
+	}
+
+	private static void checkNotAborted(String transactionId, Transaction transaction) {
+		if (transaction.state == State.ABORTED) {
+			throw new TransactionAbortedException("Transaction " + transactionId + " is aborted!");
+		}
+	}
+
+	private enum State {
+		NEW, PREPARED, COMMITTED, ABORTED
+	}
+
+	// Guarded by its own monitor
+	private static final class Transaction {
+
+		private final String coordinator;
+
+		private final String accountId;
+
+		private final boolean credit;
+
+		private final long createdAt;
+
+		private State state = State.NEW;
+
+		private BigDecimal amount;
+
+		private String currency;
+
+		// From account and amount before conversion of a credit, for the event
+		private String accountFromId;
+
+		private BigDecimal transferred;
+
+		// Epoch millis of the commit or abort, read by the recovery without lock
+		private volatile long resolvedAt;
+
+		Transaction(String coordinator, String accountId, boolean credit, long createdAt) {
+			this.coordinator = coordinator;
+			this.accountId = accountId;
+			this.credit = credit;
+			this.createdAt = createdAt;
+		}
+
+		void prepare(BigDecimal amount, String currency) {
+			this.amount = amount;
+			this.currency = currency;
+			this.state = State.PREPARED;
+		}
+
+		void transferred(String accountFromId, BigDecimal transferred) {
+			this.accountFromId = accountFromId;
+			this.transferred = transferred;
+		}
+
+		void resolve(State state) {
+			this.state = state;
+			this.resolvedAt = System.currentTimeMillis();
+		}
+	}
+}
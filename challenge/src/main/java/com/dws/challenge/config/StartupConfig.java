@@ -0,0 +1,36 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import com.dws.challenge.cluster.TransferParticipant;
+import com.dws.challenge.history.BalanceHistory;
+import com.dws.challenge.replication.ReplicationPrimary;
+import com.dws.challenge.replication.ReplicationReplica;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AsyncTransferService;
+import com.dws.challenge.service.BalanceReconciler;
+import com.dws.challenge.service.CachedClock;
+import com.dws.challenge.service.IAccountsService;
+import com.dws.challenge.web.AccountsController;
+
+/**
+ * Startup optimized run. Every bean is created lazily except the ones serving
+ * the first account request and the ones running background work, which has
+ * to start with the application and not on first use: replication endpoints,
+ * balance reconciliation, balance history compaction, the clock of the
+ * receipts, the async transfer worker and the recovery of cluster transactions.
+ */
+@Configuration
+@Profile("startup")
+public class StartupConfig {
+
+	@Bean
+	public static LazyInitializationExcludeFilter accountsApiLazyInitializationExcludeFilter() {
+		return LazyInitializationExcludeFilter.forBeanTypes(AccountsController.class, IAccountsService.class,
+				AccountsRepository.class, ReplicationPrimary.class, ReplicationReplica.class, BalanceReconciler.class,
+				BalanceHistory.class, CachedClock.class, AsyncTransferService.class, TransferParticipant.class);
+	}
+}
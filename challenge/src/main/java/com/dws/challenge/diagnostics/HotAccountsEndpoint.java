@@ -0,0 +1,39 @@
+package com.dws.challenge.diagnostics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint reporting the hottest accounts, with the lock wait and hold
+ * time percentiles of each. Available on /actuator/hotaccounts.
+ */
+@Component
+@Endpoint(id = "hotaccounts")
+public class HotAccountsEndpoint {
+
+	private static final int DEFAULT_LIMIT = 10;
+
+	@Autowired
+	private LockContentionMonitor lockContentionMonitor;
+
+	@ReadOperation
+	public Map<String, Object> hotAccounts() {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("sampleRate", lockContentionMonitor.getSampleRate());
+		report.put("sampledTransfers", lockContentionMonitor.getSampled());
+		report.put("hottestByTraffic", lockContentionMonitor.getByTraffic().top(DEFAULT_LIMIT));
+		report.put("hottestByLockWait", lockContentionMonitor.getByContention().top(DEFAULT_LIMIT));
+		return report;
+	}
+
+	@DeleteOperation
+	public void reset() {
+		lockContentionMonitor.reset();
+	}
+}
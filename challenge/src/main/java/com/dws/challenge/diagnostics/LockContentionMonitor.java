@@ -0,0 +1,81 @@
+package com.dws.challenge.diagnostics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Samples the account lock acquisitions of the transfers. One transfer every
+ * sample rate is timed, its accounts are counted in the hottest accounts by
+ * traffic and by lock wait time.
+ */
+@Component
+public class LockContentionMonitor {
+
+	private final int sampleRate;
+
+	// Accounts counted once per sampled transfer
+	private final SpaceSavingSketch byTraffic;
+
+	// Accounts counted with the lock wait time of the sampled transfer
+	private final SpaceSavingSketch byContention;
+
+	private final LongAdder sampled = new LongAdder();
+
+	public LockContentionMonitor(@Value("${diagnostics.lock-sample-rate:64}") int sampleRate,
+			@Value("${diagnostics.top-k-capacity:64}") int capacity) {
+		this.sampleRate = sampleRate;
+		this.byTraffic = new SpaceSavingSketch(capacity);
+		this.byContention = new SpaceSavingSketch(capacity);
+	}
+
+	/**
+	 * This function is used for decide if the current transfer is timed
+	 * 
+	 * @return true / false
+	 */
+	public boolean sample() {
+		return sampleRate > 0 && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+	}
+
+	/**
+	 * This function is used for record the lock times of a sampled transfer
+	 * 
+	 * @param accountFromId - account id of the withdraw
+	 * @param accountToId   - account id of the deposit
+	 * @param waitNanos     - time waited to acquire both locks
+	 * @param holdNanos     - time both locks were held
+	 */
+	public void record(String accountFromId, String accountToId, long waitNanos, long holdNanos) {
+		sampled.increment();
+		byTraffic.offer(accountFromId, 1, waitNanos, holdNanos);
+		byTraffic.offer(accountToId, 1, waitNanos, holdNanos);
+		// At least 1 so that accounts without contention are still ranked
+		byContention.offer(accountFromId, Math.max(1, waitNanos), waitNanos, holdNanos);
+		byContention.offer(accountToId, Math.max(1, waitNanos), waitNanos, holdNanos);
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public long getSampled() {
+		return sampled.sum();
+	}
+
+	public SpaceSavingSketch getByTraffic() {
+		return byTraffic;
+	}
+
+	public SpaceSavingSketch getByContention() {
+		return byContention;
+	}
+
+	public void reset() {
+		sampled.reset();
+		byTraffic.clear();
+		byContention.clear();
+	}
+}
@@ -0,0 +1,58 @@
+package com.dws.challenge.diagnostics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Histogram of durations with one bucket per power of two of nanoseconds. Fixed
+ * size, percentiles are reported as the upper bound of the bucket. Not thread
+ * safe, guarded by the owning sketch.
+ */
+class LogHistogram {
+
+	private final long[] buckets = new long[Long.SIZE];
+
+	private long count;
+
+	private long max;
+
+	void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets[Long.SIZE - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1)]++;
+		count++;
+		max = Math.max(max, value);
+	}
+
+	void reset() {
+		Arrays.fill(buckets, 0);
+		count = 0;
+		max = 0;
+	}
+
+	long percentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for (int bucket = 0; bucket < buckets.length; bucket++) {
+			seen += buckets[bucket];
+			if (seen >= rank) {
+				// Upper bound of the bucket, never more than the max value seen
+				return Math.min(max, bucket == Long.SIZE - 1 ? Long.MAX_VALUE : (2L << bucket) - 1);
+			}
+		}
+		return max;
+	}
+
+	Map<String, Object> toMicros() {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("samples", count);
+		report.put("p50Micros", percentile(50) / 1000.0);
+		report.put("p90Micros", percentile(90) / 1000.0);
+		report.put("p99Micros", percentile(99) / 1000.0);
+		report.put("maxMicros", max / 1000.0);
+		return report;
+	}
+}
@@ -0,0 +1,32 @@
+package com.dws.challenge.diagnostics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.service.BalanceReconciler;
+import com.dws.challenge.service.ReconciliationReport;
+
+/**
+ * Actuator endpoint reporting the last balance reconciliation, a POST runs one
+ * right away. Available on /actuator/reconciliation.
+ */
+@Component
+@Endpoint(id = "reconciliation")
+public class ReconciliationEndpoint {
+
+	@Autowired
+	private BalanceReconciler balanceReconciler;
+
+	@ReadOperation
+	public ReconciliationReport lastReport() {
+		return balanceReconciler.getLastReport();
+	}
+
+	@WriteOperation
+	public ReconciliationReport reconcile() {
+		return balanceReconciler.reconcile();
+	}
+}
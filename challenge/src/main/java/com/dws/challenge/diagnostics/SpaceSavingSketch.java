@@ -0,0 +1,123 @@
+package com.dws.challenge.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving top-K sketch (Metwally et al.). Keeps a fixed number of
+ * counters, a key not yet counted replaces the counter with the lowest count
+ * and inherits this count as its error. The count of a key is never
+ * underestimated and every key with a count above total / capacity is kept.
+ * Every counter also keeps the lock wait and hold time histograms of its key.
+ * Memory use only depends on the capacity.
+ */
+public class SpaceSavingSketch {
+
+	private final Counter[] counters;
+
+	private final Map<String, Counter> index;
+
+	private int size;
+
+	private long total;
+
+	public SpaceSavingSketch(int capacity) {
+		this.counters = new Counter[capacity];
+		for (int i = 0; i < capacity; i++) {
+			counters[i] = new Counter();
+		}
+		this.index = new HashMap<>(capacity * 2);
+	}
+
+	/**
+	 * This function is used for count an occurrence of the key
+	 * 
+	 * @param key       - account id
+	 * @param weight    - weight of the occurrence
+	 * @param waitNanos - time waited for the lock
+	 * @param holdNanos - time the lock was held
+	 */
+	public synchronized void offer(String key, long weight, long waitNanos, long holdNanos) {
+		Counter counter = index.get(key);
+		if (counter == null) {
+			if (size < counters.length) {
+				counter = counters[size++];
+			} else {
+				// Replace the key with the lowest count
+				counter = counters[0];
+				for (int i = 1; i < counters.length; i++) {
+					if (counters[i].count < counter.count) {
+						counter = counters[i];
+					}
+				}
+				index.remove(counter.key);
+				counter.error = counter.count;
+				counter.lockWait.reset();
+				counter.lockHold.reset();
+			}
+			counter.key = key;
+			index.put(key, counter);
+		}
+		counter.count += weight;
+		counter.lockWait.record(waitNanos);
+		counter.lockHold.record(holdNanos);
+		total += weight;
+	}
+
+	/**
+	 * This function is used for get the keys with the highest count
+	 * 
+	 * @param limit - maximum number of keys
+	 * @return List - keys with their estimated count, error and lock times
+	 */
+	public synchronized List<Map<String, Object>> top(int limit) {
+		Counter[] used = Arrays.copyOf(counters, size);
+		Arrays.sort(used, Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+		List<Map<String, Object>> top = new ArrayList<>();
+		for (int i = 0; i < Math.min(limit, used.length); i++) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("accountId", used[i].key);
+			entry.put("count", used[i].count);
+			entry.put("maxError", used[i].error);
+			entry.put("lockWait", used[i].lockWait.toMicros());
+			entry.put("lockHold", used[i].lockHold.toMicros());
+			top.add(entry);
+		}
+		return top;
+	}
+
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	public synchronized void clear() {
+		for (Counter counter : counters) {
+			counter.key = null;
+			counter.count = 0;
+			counter.error = 0;
+			counter.lockWait.reset();
+			counter.lockHold.reset();
+		}
+		index.clear();
+		size = 0;
+		total = 0;
+	}
+
+	private static class Counter {
+
+		private String key;
+
+		private long count;
+
+		private long error;
+
+		private final LogHistogram lockWait = new LogHistogram();
+
+		private final LogHistogram lockHold = new LogHistogram();
+	}
+}
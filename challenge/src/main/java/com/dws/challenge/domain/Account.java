@@ -1,34 +1,59 @@
 package com.dws.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 
 import java.math.BigDecimal;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 @Data
 public class Account {
 
+	public static final String DEFAULT_CURRENCY = "EUR";
+
 	@NotNull
 	@NotEmpty
 	private final String accountId;
 
+	// Volatile, balance is read without the account lock (e.g. replication
+	// snapshot)
 	@NotNull
 	@Min(value = 0, message = "Initial balance must be positive.")
-	private BigDecimal balance;
+	private volatile BigDecimal balance;
+
+	// ISO 4217 code, never changes
+	@NotNull
+	@Pattern(regexp = "[A-Z]{3}", message = "Currency must be an ISO 4217 code.")
+	private final String currency;
+
+	// Version of the last balance update, written after the balance. Returned as
+	// ETag, not part of the account JSON. 0 when unknown (remote account)
+	@JsonIgnore
+	@EqualsAndHashCode.Exclude
+	private volatile long version;
 
 	public Account(String accountId) {
 		this.accountId = accountId;
 		this.balance = BigDecimal.ZERO;
+		this.currency = DEFAULT_CURRENCY;
+	}
+
+	public Account(String accountId, BigDecimal balance) {
+		this(accountId, balance, DEFAULT_CURRENCY);
 	}
 
 	@JsonCreator
-	public Account(@JsonProperty("accountId") String accountId, @JsonProperty("balance") BigDecimal balance) {
+	public Account(@JsonProperty("accountId") String accountId, @JsonProperty("balance") BigDecimal balance,
+			@JsonProperty("currency") String currency) {
 		this.accountId = accountId;
 		this.balance = balance;
+		this.currency = currency == null ? DEFAULT_CURRENCY : currency;
 	}
 }
@@ -0,0 +1,24 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+@Data
+public class AccountVersion {
+
+	private final String accountId;
+
+	private final BigDecimal balance;
+
+	private final String currency;
+
+	// 0 when unknown (remote account)
+	private final long version;
+
+	public static AccountVersion of(Account account) {
+		// Version read first, the balance is at least as recent
+		long version = account.getVersion();
+		return new AccountVersion(account.getAccountId(), account.getBalance(), account.getCurrency(), version);
+	}
+}
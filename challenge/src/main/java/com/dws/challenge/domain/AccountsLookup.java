@@ -0,0 +1,32 @@
+package com.dws.challenge.domain;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class AccountsLookup {
+
+	@NotNull
+	@NotEmpty
+	@Size(max = 10000, message = "At most 10000 accounts per lookup.")
+	private final List<String> accountIds;
+
+	// Only the accounts changed after this version are returned, 0 for all
+	@Min(value = 0, message = "Version must be positive.")
+	private final long sinceVersion;
+
+	@JsonCreator
+	public AccountsLookup(@JsonProperty("accountIds") List<String> accountIds,
+			@JsonProperty("sinceVersion") long sinceVersion) {
+		this.accountIds = accountIds;
+		this.sinceVersion = sinceVersion;
+	}
+}
@@ -0,0 +1,27 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+@Data
+public class BalanceAsOf {
+
+	private final String accountId;
+
+	private final Instant asOf;
+
+	private final BigDecimal balance;
+
+	@JsonCreator
+	public BalanceAsOf(@JsonProperty("accountId") String accountId, @JsonProperty("asOf") Instant asOf,
+			@JsonProperty("balance") BigDecimal balance) {
+		this.accountId = accountId;
+		this.asOf = asOf;
+		this.balance = balance;
+	}
+}
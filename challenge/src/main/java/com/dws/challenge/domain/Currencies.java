@@ -0,0 +1,42 @@
+package com.dws.challenge.domain;
+
+import java.util.Currency;
+
+import com.dws.challenge.exception.InvalidCurrencyException;
+
+/**
+ * Minor units of the account currencies. Amounts are kept to the minor unit of
+ * their currency, which the database column holds without rounding. Accounts,
+ * FX rates and the reconciliation all take the decimal places from here, only
+ * ISO 4217 currencies with a minor unit are accepted.
+ */
+public final class Currencies {
+
+	// Decimal places of the database balance column, the most of any ISO 4217
+	// currency
+	public static final int MAX_FRACTION_DIGITS = 4;
+
+	private Currencies() {
+	}
+
+	/**
+	 * This function is used for get the decimal places of a currency
+	 * 
+	 * @param currency - currency code
+	 * @return int - decimal places of the minor unit
+	 * @throws InvalidCurrencyException when the currency is not an ISO 4217 one
+	 *                                  or has no minor unit
+	 */
+	public static int fractionDigits(String currency) {
+		int digits;
+		try {
+			digits = Currency.getInstance(currency).getDefaultFractionDigits();
+		} catch (IllegalArgumentException | NullPointerException e) {
+			throw new InvalidCurrencyException("Currency " + currency + " is not an ISO 4217 currency!");
+		}
+		if (digits < 0) {
+			throw new InvalidCurrencyException("Currency " + currency + " has no minor unit!");
+		}
+		return digits;
+	}
+}
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.Data;
 
 @Data
@@ -24,11 +25,22 @@ public class TransferAmount {
 	@Min(value = 1, message = "Amount must be natural number.")
 	private BigDecimal amount;
 
+	// Currency of the amount, optional. Must be the currency of the from account,
+	// the amount is converted to the currency of the to account.
+	@Pattern(regexp = "[A-Z]{3}", message = "Currency must be an ISO 4217 code.")
+	private final String currency;
+
+	public TransferAmount(String accountFromId, String accountToId, BigDecimal amount) {
+		this(accountFromId, accountToId, amount, null);
+	}
+
 	@JsonCreator
 	public TransferAmount(@JsonProperty("accountFromId") String accountFromId,
-			@JsonProperty("accountToId") String accountToId, @JsonProperty("amount") BigDecimal amount) {
+			@JsonProperty("accountToId") String accountToId, @JsonProperty("amount") BigDecimal amount,
+			@JsonProperty("currency") String currency) {
 		this.accountFromId = accountFromId;
 		this.accountToId = accountToId;
 		this.amount = amount;
+		this.currency = currency;
 	}
 }
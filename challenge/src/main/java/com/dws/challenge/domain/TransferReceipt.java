@@ -0,0 +1,62 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * Outcome of a committed transfer. The balances are the ones left by the
+ * transfer, read while the account locks were held. They are not known for a
+ * transfer between two cluster partitions.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferReceipt {
+
+	private final String transferId;
+
+	private final String accountFromId;
+
+	private final String accountToId;
+
+	// Withdrawn, in the currency of the from account
+	private final BigDecimal amount;
+
+	private final String currency;
+
+	// Deposited, in the currency of the to account
+	private final BigDecimal creditedAmount;
+
+	private final String creditedCurrency;
+
+	private final BigDecimal accountFromBalance;
+
+	private final BigDecimal accountToBalance;
+
+	// Epoch millis of the commit
+	private final long timestamp;
+
+	@JsonCreator
+	public TransferReceipt(@JsonProperty("transferId") String transferId,
+			@JsonProperty("accountFromId") String accountFromId, @JsonProperty("accountToId") String accountToId,
+			@JsonProperty("amount") BigDecimal amount, @JsonProperty("currency") String currency,
+			@JsonProperty("creditedAmount") BigDecimal creditedAmount,
+			@JsonProperty("creditedCurrency") String creditedCurrency,
+			@JsonProperty("accountFromBalance") BigDecimal accountFromBalance,
+			@JsonProperty("accountToBalance") BigDecimal accountToBalance, @JsonProperty("timestamp") long timestamp) {
+		this.transferId = transferId;
+		this.accountFromId = accountFromId;
+		this.accountToId = accountToId;
+		this.amount = amount;
+		this.currency = currency;
+		this.creditedAmount = creditedAmount;
+		this.creditedCurrency = creditedCurrency;
+		this.accountFromBalance = accountFromBalance;
+		this.accountToBalance = accountToBalance;
+		this.timestamp = timestamp;
+	}
+}
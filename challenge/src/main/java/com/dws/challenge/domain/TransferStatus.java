@@ -0,0 +1,25 @@
+package com.dws.challenge.domain;
+
+import com.dws.challenge.service.QueuedTransfer;
+
+import lombok.Data;
+
+@Data
+public class TransferStatus {
+
+	private final String transferId;
+
+	private final QueuedTransfer.Status status;
+
+	// Error of a failed transfer
+	private final String message;
+
+	public static TransferStatus of(QueuedTransfer transfer) {
+		return new TransferStatus(transfer.getTransferId(), transfer.getStatus(), transfer.getFailureMessage());
+	}
+
+	// Status of a transfer at submission, the worker may already have applied it
+	public static TransferStatus pending(QueuedTransfer transfer) {
+		return new TransferStatus(transfer.getTransferId(), QueuedTransfer.Status.PENDING, null);
+	}
+}
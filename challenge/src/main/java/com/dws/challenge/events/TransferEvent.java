@@ -0,0 +1,14 @@
+package com.dws.challenge.events;
+
+import java.math.BigDecimal;
+
+/**
+ * Committed transfer, as sent to the event stream subscribers.
+ */
+public record TransferEvent(long sequence, String accountFromId, String accountToId, BigDecimal amount,
+		long timestamp) {
+
+	public boolean concerns(String accountId) {
+		return accountId.equals(accountFromId) || accountId.equals(accountToId);
+	}
+}
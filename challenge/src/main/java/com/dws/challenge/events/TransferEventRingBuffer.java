@@ -0,0 +1,147 @@
+package com.dws.challenge.events;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Preallocated ring buffer of the committed transfers. Publishing never waits
+ * for the readers: a slot is overwritten once the buffer has wrapped, and a
+ * reader detects it was overtaken from the slot sequence. Every slot is a
+ * sequence lock, the sequence is cleared while the slot is written and set once
+ * the fields are complete.
+ *
+ * Once the buffer has wrapped two publishers may get the same slot, a publisher
+ * claims it by swapping the sequence it read for the writing mark. A publisher
+ * finding a later sequence in its slot was overtaken a whole lap, its event is
+ * dropped as already overwritten.
+ */
+@Component
+public class TransferEventRingBuffer {
+
+	// Slot sequence while the slot is written
+	private static final long WRITING = -1L;
+
+	// Slot sequence before the first event
+	private static final long EMPTY = -2L;
+
+	private static final VarHandle SEQUENCE;
+
+	static {
+		try {
+			SEQUENCE = MethodHandles.lookup().findVarHandle(Slot.class, "sequence", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Slot[] slots;
+
+	private final int mask;
+
+	// Next sequence to publish
+	private final AtomicLong cursor = new AtomicLong();
+
+	public TransferEventRingBuffer(@Value("${events.ring-buffer-size:65536}") int size) {
+		if (Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("Ring buffer size must be a power of two");
+		}
+		this.slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * This function is used for publish a committed transfer
+	 * 
+	 * @param accountFromId - account id amount was withdrawn from
+	 * @param accountToId   - account id amount was deposited in
+	 * @param amount        - amount transferred
+	 * @return long - sequence of the event
+	 */
+	public long publish(String accountFromId, String accountToId, BigDecimal amount) {
+		long sequence = cursor.getAndIncrement();
+		Slot slot = slots[(int) (sequence & mask)];
+		for (;;) {
+			long previous = slot.sequence;
+			if (previous > sequence) {
+				// Overwritten already by a publisher a lap ahead
+				return sequence;
+			}
+			if (previous != WRITING && SEQUENCE.compareAndSet(slot, previous, WRITING)) {
+				break;
+			}
+			// Another publisher is writing the slot, for a short while only
+			Thread.onSpinWait();
+		}
+		// Readers must not see the new fields before the slot is marked as written
+		VarHandle.storeStoreFence();
+		slot.accountFromId = accountFromId;
+		slot.accountToId = accountToId;
+		slot.amount = amount;
+		slot.timestamp = System.currentTimeMillis();
+		slot.sequence = sequence;
+		return sequence;
+	}
+
+	/**
+	 * This function is used for read the event with the given sequence
+	 * 
+	 * @param sequence - sequence of the event
+	 * @return TransferEvent - the event, null when not published yet or
+	 *         overwritten (see {@link #getOldestAvailable()})
+	 */
+	public TransferEvent read(long sequence) {
+		Slot slot = slots[(int) (sequence & mask)];
+		if (slot.sequence != sequence) {
+			return null;
+		}
+		TransferEvent event = new TransferEvent(sequence, slot.accountFromId, slot.accountToId, slot.amount,
+				slot.timestamp);
+		// Fields must be read before the sequence is checked again
+		VarHandle.loadLoadFence();
+		return slot.sequence == sequence ? event : null;
+	}
+
+	/**
+	 * This function is used for get the next sequence to be published
+	 * 
+	 * @return long - next sequence
+	 */
+	public long getCursor() {
+		return cursor.get();
+	}
+
+	/**
+	 * This function is used for get the oldest sequence not overwritten yet. A
+	 * reader behind it has lost events.
+	 * 
+	 * @return long - oldest available sequence
+	 */
+	public long getOldestAvailable() {
+		return Math.max(0, cursor.get() - slots.length);
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	private static class Slot {
+
+		private volatile long sequence = EMPTY;
+
+		private String accountFromId;
+
+		private String accountToId;
+
+		private BigDecimal amount;
+
+		private long timestamp;
+	}
+}
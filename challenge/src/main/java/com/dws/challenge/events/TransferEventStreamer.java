@@ -0,0 +1,170 @@
+package com.dws.challenge.events;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.dws.challenge.exception.TooManySubscribersException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends the transfer events of the ring buffer to the Server-Sent Events
+ * subscribers. Every subscriber has its own thread and position in the ring
+ * buffer, the transfers never wait for a subscriber. A subscriber falling too
+ * far behind is dropped, it can resume from the last event id it received as
+ * long as this event is still in the ring buffer.
+ *
+ * A subscriber resuming after events already overwritten first gets a gap
+ * event with the missing range. A subscriber resuming after an event id not
+ * published yet (the sequence restarted with the application) first gets a
+ * reset event. The id of both events is the one to resume from afterwards.
+ */
+@Slf4j
+@Component
+public class TransferEventStreamer {
+
+	@Autowired
+	private TransferEventRingBuffer transferEventRingBuffer;
+
+	@Value("${events.subscriber-max-lag:32768}")
+	private long maxLag;
+
+	@Value("${events.idle-poll-ms:5}")
+	private long idlePollMs;
+
+	@Value("${events.heartbeat-ms:15000}")
+	private long heartbeatMs;
+
+	private final ThreadPoolExecutor subscribers;
+
+	private final AtomicInteger subscriberIds = new AtomicInteger();
+
+	private volatile boolean running = true;
+
+	public TransferEventStreamer(@Value("${events.max-subscribers:64}") int maxSubscribers) {
+		this.subscribers = new ThreadPoolExecutor(0, maxSubscribers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "transfer-events-" + subscriberIds.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	@PreDestroy
+	public void stop() {
+		running = false;
+		subscribers.shutdownNow();
+	}
+
+	/**
+	 * This function is used for subscribe to the transfer events
+	 * 
+	 * @param emitter     - emitter of the subscriber
+	 * @param accountId   - only events of this account, all events when null
+	 * @param lastEventId - last event received before a reconnection, null for
+	 *                    new events only
+	 * @throws TooManySubscribersException
+	 */
+	public void subscribe(SseEmitter emitter, String accountId, Long lastEventId) {
+		long cursor = transferEventRingBuffer.getCursor();
+		long oldestAvailable = transferEventRingBuffer.getOldestAvailable();
+		long next = cursor;
+		SseEmitter.SseEventBuilder notice = null;
+		if (lastEventId != null) {
+			next = lastEventId + 1;
+			if (next < oldestAvailable) {
+				notice = SseEmitter.event().id(Long.toString(oldestAvailable - 1)).name("gap")
+						.data(Map.of("from", next, "to", oldestAvailable - 1));
+				next = oldestAvailable;
+			} else if (next > cursor) {
+				notice = SseEmitter.event().id(Long.toString(cursor - 1)).name("reset")
+						.data(Map.of("lastEventId", lastEventId, "resumeFrom", cursor));
+				next = cursor;
+			}
+		}
+		Subscription subscription = new Subscription(emitter, accountId, next, notice);
+		emitter.onCompletion(subscription::cancel);
+		emitter.onTimeout(subscription::cancel);
+		emitter.onError(error -> subscription.cancel());
+		try {
+			subscribers.execute(subscription::stream);
+		} catch (RejectedExecutionException e) {
+			throw new TooManySubscribersException("Too many transfer event subscribers!");
+		}
+	}
+
+	private class Subscription {
+
+		private final SseEmitter emitter;
+
+		private final String accountId;
+
+		private long next;
+
+		// Gap or reset sent before the events, null when resuming where asked
+		private final SseEmitter.SseEventBuilder notice;
+
+		private volatile boolean active = true;
+
+		Subscription(SseEmitter emitter, String accountId, long next, SseEmitter.SseEventBuilder notice) {
+			this.emitter = emitter;
+			this.accountId = accountId;
+			this.next = next;
+			this.notice = notice;
+		}
+
+		void cancel() {
+			active = false;
+		}
+
+		void stream() {
+			long lastSent = System.currentTimeMillis();
+			try {
+				if (notice != null) {
+					emitter.send(notice);
+				}
+				while (active && running) {
+					// Slow consumer, drop it with the sequence to resume from
+					if (transferEventRingBuffer.getCursor() - next > maxLag
+							|| next < transferEventRingBuffer.getOldestAvailable()) {
+						log.warn("Transfer event subscriber dropped at sequence {}", next);
+						emitter.send(SseEmitter.event().name("dropped")
+								.data(Map.of("resumeFrom", next, "oldestAvailable",
+										transferEventRingBuffer.getOldestAvailable())));
+						emitter.complete();
+						return;
+					}
+					TransferEvent event = transferEventRingBuffer.read(next);
+					if (event == null) {
+						if (System.currentTimeMillis() - lastSent > heartbeatMs) {
+							emitter.send(SseEmitter.event().comment("heartbeat"));
+							lastSent = System.currentTimeMillis();
+						}
+						LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(idlePollMs));
+						continue;
+					}
+					next++;
+					if (accountId == null || event.concerns(accountId)) {
+						emitter.send(SseEmitter.event().id(Long.toString(event.sequence())).name("transfer").data(event));
+						lastSent = System.currentTimeMillis();
+					}
+				}
+			} catch (IOException | IllegalStateException e) {
+				// Subscriber disconnected
+				log.debug("Transfer event subscriber disconnected", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class CurrencyConversionException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CurrencyConversionException(String message) {
+		super(message);
+	}
+}
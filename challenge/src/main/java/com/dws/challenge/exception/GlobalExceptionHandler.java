@@ -26,4 +26,82 @@ public class GlobalExceptionHandler {
 	public @ResponseBody ErrorResponse handleException(DuplicateAccountIdException ex) {
 		return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage());
 	}
-}
\ No newline at end of file
+
+	@ExceptionHandler(value = NodeUnavailableException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public @ResponseBody ErrorResponse handleException(NodeUnavailableException ex) {
+		return new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = ReadOnlyReplicaException.class)
+	@ResponseStatus(HttpStatus.METHOD_NOT_ALLOWED)
+	public @ResponseBody ErrorResponse handleException(ReadOnlyReplicaException ex) {
+		return new ErrorResponse(HttpStatus.METHOD_NOT_ALLOWED.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = ReplicaLagException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public @ResponseBody ErrorResponse handleException(ReplicaLagException ex) {
+		return new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = TooManySubscribersException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public @ResponseBody ErrorResponse handleException(TooManySubscribersException ex) {
+		return new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = TransferIdNotExistException.class)
+	@ResponseStatus(HttpStatus.NOT_FOUND)
+	public @ResponseBody ErrorResponse handleException(TransferIdNotExistException ex) {
+		return new ErrorResponse(HttpStatus.NOT_FOUND.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = TransferQueueFullException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public @ResponseBody ErrorResponse handleException(TransferQueueFullException ex) {
+		return new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = HistoryDisabledException.class)
+	@ResponseStatus(HttpStatus.NOT_IMPLEMENTED)
+	public @ResponseBody ErrorResponse handleException(HistoryDisabledException ex) {
+		return new ErrorResponse(HttpStatus.NOT_IMPLEMENTED.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = CurrencyConversionException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public @ResponseBody ErrorResponse handleException(CurrencyConversionException ex) {
+		return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = UnauthorizedNodeException.class)
+	@ResponseStatus(HttpStatus.UNAUTHORIZED)
+	public @ResponseBody ErrorResponse handleException(UnauthorizedNodeException ex) {
+		return new ErrorResponse(HttpStatus.UNAUTHORIZED.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = TransactionAbortedException.class)
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public @ResponseBody ErrorResponse handleException(TransactionAbortedException ex) {
+		return new ErrorResponse(HttpStatus.CONFLICT.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = InvalidReplicationTokenException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public @ResponseBody ErrorResponse handleException(InvalidReplicationTokenException ex) {
+		return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = InvalidAmountException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public @ResponseBody ErrorResponse handleException(InvalidAmountException ex) {
+		return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage());
+	}
+
+	@ExceptionHandler(value = InvalidCurrencyException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public @ResponseBody ErrorResponse handleException(InvalidCurrencyException ex) {
+		return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage());
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class HistoryDisabledException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public HistoryDisabledException(String message) {
+		super(message);
+	}
+}
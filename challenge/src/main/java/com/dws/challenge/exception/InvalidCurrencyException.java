@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class InvalidCurrencyException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidCurrencyException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class InvalidReplicationTokenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public InvalidReplicationTokenException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class NodeUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public NodeUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
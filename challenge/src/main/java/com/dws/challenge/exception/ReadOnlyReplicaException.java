@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class ReadOnlyReplicaException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ReadOnlyReplicaException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class ReplicaLagException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ReplicaLagException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class TooManySubscribersException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TooManySubscribersException(String message) {
+		super(message);
+	}
+}
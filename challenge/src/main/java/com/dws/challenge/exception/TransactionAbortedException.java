@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class TransactionAbortedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TransactionAbortedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class TransferIdNotExistException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TransferIdNotExistException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class TransferQueueFullException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TransferQueueFullException(String message) {
+		super(message);
+	}
+}
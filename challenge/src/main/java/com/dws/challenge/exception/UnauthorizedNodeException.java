@@ -0,0 +1,10 @@
+package com.dws.challenge.exception;
+
+public class UnauthorizedNodeException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public UnauthorizedNodeException(String message) {
+		super(message);
+	}
+}
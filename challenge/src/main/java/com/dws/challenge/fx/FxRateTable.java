@@ -0,0 +1,269 @@
+package com.dws.challenge.fx;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.dws.challenge.domain.Currencies;
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.InvalidCurrencyException;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable table of FX rates, quoted as units of each currency for one unit of
+ * the base currency. The conversion factor of every currency pair is computed
+ * once when the table is built, including the difference of minor unit digits
+ * of the two currencies. It is kept as a long mantissa of 18 significant digits
+ * and a decimal shift of its own, so a factor far below one (weak to strong
+ * currency) is as precise as a factor above one. A conversion is then an
+ * integer multiplication of the amount in minor units by the mantissa, shifted
+ * and rounded half up, without BigDecimal division.
+ *
+ * Updates build a new table, see {@link FxRates}.
+ */
+public final class FxRateTable {
+
+	// Significant digits of the conversion factors
+	static final int FACTOR_DIGITS = 18;
+
+	private static final MathContext FACTOR_CONTEXT = new MathContext(FACTOR_DIGITS, RoundingMode.HALF_EVEN);
+
+	// Powers of ten fitting in a long
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	// Digits of a step of the long division, the divisor stays below 2^31
+	private static final int DIGITS_PER_STEP = 9;
+
+	private static final long LOW_32_BITS = 0xFFFFFFFFL;
+
+	private final String baseCurrency;
+
+	private final long version;
+
+	// Rates for display, sorted by currency
+	private final Map<String, BigDecimal> rates;
+
+	private final Map<String, Integer> indexes;
+
+	private final int[] fractionDigits;
+
+	// Factor from currency i to currency j at i * n + j, mantissa * 10^-shift
+	private final long[] mantissas;
+
+	private final int[] shifts;
+
+	private FxRateTable(String baseCurrency, long version, Map<String, BigDecimal> rates) {
+		this.baseCurrency = baseCurrency;
+		this.version = version;
+		this.rates = Collections.unmodifiableMap(new TreeMap<>(rates));
+
+		int n = rates.size();
+		String[] currencies = this.rates.keySet().toArray(new String[0]);
+		BigDecimal[] quotes = new BigDecimal[n];
+		this.indexes = new HashMap<>(n * 2);
+		this.fractionDigits = new int[n];
+		for (int i = 0; i < n; i++) {
+			indexes.put(currencies[i], i);
+			fractionDigits[i] = Currencies.fractionDigits(currencies[i]);
+			quotes[i] = this.rates.get(currencies[i]);
+		}
+		this.mantissas = new long[n * n];
+		this.shifts = new int[n * n];
+		for (int from = 0; from < n; from++) {
+			for (int to = 0; to < n; to++) {
+				// to / from, shifted by the minor unit digits
+				BigDecimal factor = quotes[to].movePointRight(fractionDigits[to] - fractionDigits[from])
+						.divide(quotes[from], FACTOR_CONTEXT);
+				BigInteger mantissa = factor.unscaledValue();
+				int shift = factor.scale();
+				if (shift < 0) {
+					mantissa = mantissa.multiply(BigInteger.TEN.pow(-shift));
+					shift = 0;
+				}
+				if (mantissa.bitLength() >= Long.SIZE) {
+					throw new CurrencyConversionException(
+							"Rate of " + currencies[to] + " to " + currencies[from] + " is too large!");
+				}
+				mantissas[from * n + to] = mantissa.longValue();
+				shifts[from * n + to] = shift;
+			}
+		}
+	}
+
+	/**
+	 * This function is used for create a table with the base currency only
+	 *
+	 * @param baseCurrency - currency the rates are quoted against
+	 * @return FxRateTable - table of version 0
+	 * @throws CurrencyConversionException
+	 * @throws InvalidCurrencyException
+	 */
+	public static FxRateTable of(String baseCurrency) {
+		Currencies.fractionDigits(baseCurrency);
+		return new FxRateTable(baseCurrency, 0, Map.of(baseCurrency, BigDecimal.ONE));
+	}
+
+	/**
+	 * This function is used for create a table of a given version, as received
+	 * from the node updating the rates in cluster mode
+	 *
+	 * @param baseCurrency - currency the rates are quoted against
+	 * @param version      - version of the table
+	 * @param rates        - units of each currency for one unit of the base
+	 *                     currency
+	 * @return FxRateTable - table with these rates only
+	 * @throws CurrencyConversionException
+	 * @throws InvalidCurrencyException
+	 */
+	@JsonCreator
+	public static FxRateTable of(@JsonProperty("baseCurrency") String baseCurrency,
+			@JsonProperty("version") long version, @JsonProperty("rates") Map<String, BigDecimal> rates) {
+		Currencies.fractionDigits(baseCurrency);
+		Map<String, BigDecimal> checked = new HashMap<>();
+		checked.put(baseCurrency, BigDecimal.ONE);
+		if (rates != null) {
+			rates.forEach((currency, rate) -> checked.put(currency, checkRate(baseCurrency, currency, rate)));
+		}
+		return new FxRateTable(baseCurrency, version, checked);
+	}
+
+	/**
+	 * This function is used for create a new table with the given rates added or
+	 * replaced, all at once
+	 *
+	 * @param updates - units of each currency for one unit of the base currency
+	 * @return FxRateTable - new table, next version
+	 * @throws CurrencyConversionException
+	 * @throws InvalidCurrencyException
+	 */
+	public FxRateTable with(Map<String, BigDecimal> updates) {
+		Map<String, BigDecimal> newRates = new HashMap<>(rates);
+		for (Map.Entry<String, BigDecimal> update : updates.entrySet()) {
+			newRates.put(update.getKey(), checkRate(baseCurrency, update.getKey(), update.getValue()));
+		}
+		return new FxRateTable(baseCurrency, version + 1, newRates);
+	}
+
+	private static BigDecimal checkRate(String baseCurrency, String currency, BigDecimal rate) {
+		if (rate == null || rate.signum() <= 0) {
+			throw new CurrencyConversionException("Rate of " + currency + " must be positive!");
+		}
+		if (currency.equals(baseCurrency) && rate.compareTo(BigDecimal.ONE) != 0) {
+			throw new CurrencyConversionException("Rate of base currency " + baseCurrency + " is always 1!");
+		}
+		Currencies.fractionDigits(currency);
+		return rate;
+	}
+
+	/**
+	 * This function is used for convert an amount between two currencies of the
+	 * table
+	 *
+	 * @param amount       - amount in the from currency, at most its minor unit
+	 *                     digits
+	 * @param fromCurrency - currency of the amount
+	 * @param toCurrency   - currency to convert to
+	 * @return BigDecimal - converted amount, scale of the to currency minor unit
+	 * @throws CurrencyConversionException
+	 */
+	public BigDecimal convert(BigDecimal amount, String fromCurrency, String toCurrency) {
+		int from = indexOf(fromCurrency);
+		int to = indexOf(toCurrency);
+		long minorUnits;
+		try {
+			minorUnits = amount.movePointRight(fractionDigits[from]).longValueExact();
+		} catch (ArithmeticException e) {
+			throw new CurrencyConversionException(
+					"Amount " + amount + " is not a whole number of " + fromCurrency + " minor units!");
+		}
+		int pair = from * indexes.size() + to;
+		long converted;
+		try {
+			converted = multiplyAndShift(minorUnits, mantissas[pair], shifts[pair]);
+		} catch (ArithmeticException e) {
+			throw new CurrencyConversionException("Amount " + amount + " is too large to convert!");
+		}
+		return BigDecimal.valueOf(converted, fractionDigits[to]);
+	}
+
+	/**
+	 * This function is used for check a currency has a rate in the table
+	 *
+	 * @param currency - currency code
+	 * @return true / false
+	 */
+	public boolean contains(String currency) {
+		return indexes.containsKey(currency);
+	}
+
+	public String getBaseCurrency() {
+		return baseCurrency;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public Map<String, BigDecimal> getRates() {
+		return rates;
+	}
+
+	private int indexOf(String currency) {
+		Integer index = indexes.get(currency);
+		if (index == null) {
+			throw new CurrencyConversionException("No FX rate for currency " + currency + "!");
+		}
+		return index;
+	}
+
+	// a * mantissa / 10^shift rounded half up, for a and mantissa not negative.
+	// The product is computed on 128 bits when it does not fit in a long.
+	static long multiplyAndShift(long a, long mantissa, int shift) {
+		if (shift == 0) {
+			return Math.multiplyExact(a, mantissa);
+		}
+		long high = Math.multiplyHigh(a, mantissa);
+		long low = a * mantissa;
+		if (high == 0 && low >= 0 && shift < POWERS_OF_TEN.length) {
+			long half = POWERS_OF_TEN[shift] / 2;
+			if (low <= Long.MAX_VALUE - half) {
+				return (low + half) / POWERS_OF_TEN[shift];
+			}
+		}
+		// Divided by 10^(shift - 1) in steps, each a long division of the 4 32 bits
+		// digits. The remainder is lower than the divisor so every partial dividend
+		// fits in a long, and the floor of successive divisions is the floor of the
+		// whole one.
+		for (int digits = shift - 1; digits > 0 && (high != 0 || low != 0); digits -= DIGITS_PER_STEP) {
+			long divisor = POWERS_OF_TEN[Math.min(digits, DIGITS_PER_STEP)];
+			long dividend = high >>> 32;
+			long q3 = dividend / divisor;
+			dividend = ((dividend % divisor) << 32) | (high & LOW_32_BITS);
+			long q2 = dividend / divisor;
+			dividend = ((dividend % divisor) << 32) | (low >>> 32);
+			long q1 = dividend / divisor;
+			dividend = ((dividend % divisor) << 32) | (low & LOW_32_BITS);
+			long q0 = dividend / divisor;
+			high = (q3 << 32) | q2;
+			low = (q1 << 32) | q0;
+		}
+		// Last digit rounded half up
+		if (high != 0 || low < 0 || low > Long.MAX_VALUE - 5) {
+			throw new ArithmeticException("long overflow");
+		}
+		return (low + 5) / 10;
+	}
+}
@@ -0,0 +1,89 @@
+package com.dws.challenge.fx;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.exception.CurrencyConversionException;
+
+/**
+ * Current FX rate table. The table is immutable, an update builds a copy with
+ * the new rates and publishes it with a single atomic swap (copy on write), so
+ * conversions only read a reference and never lock. A bulk update is applied
+ * as one publish, a conversion sees all the new rates or none.
+ */
+@Component
+public class FxRates {
+
+	private final AtomicReference<FxRateTable> table;
+
+	public FxRates(@Value("${fx.base-currency:EUR}") String baseCurrency, @Value("${fx.rates:}") String rates) {
+		this.table = new AtomicReference<>(FxRateTable.of(baseCurrency).with(parse(rates)));
+	}
+
+	/**
+	 * This function is used for get the current table
+	 *
+	 * @return FxRateTable - current rates
+	 */
+	public FxRateTable getTable() {
+		return table.get();
+	}
+
+	/**
+	 * This function is used for convert an amount with the current rates
+	 *
+	 * @param amount       - amount in the from currency
+	 * @param fromCurrency - currency of the amount
+	 * @param toCurrency   - currency to convert to
+	 * @return BigDecimal - converted amount
+	 * @throws CurrencyConversionException
+	 */
+	public BigDecimal convert(BigDecimal amount, String fromCurrency, String toCurrency) {
+		return table.get().convert(amount, fromCurrency, toCurrency);
+	}
+
+	/**
+	 * This function is used for add or replace rates, all of them in one publish
+	 *
+	 * @param rates - units of each currency for one unit of the base currency
+	 * @return FxRateTable - published table
+	 * @throws CurrencyConversionException
+	 */
+	public FxRateTable publish(Map<String, BigDecimal> rates) {
+		// The new table is computed again if another publish happened meanwhile
+		return table.updateAndGet(current -> current.with(rates));
+	}
+
+	/**
+	 * This function is used for replace the current table by a table of a higher
+	 * version, built by another node in cluster mode. A table received out of
+	 * order, not newer than the current one, is ignored.
+	 *
+	 * @param newTable - table to install
+	 * @return FxRateTable - current table after the install
+	 */
+	public FxRateTable install(FxRateTable newTable) {
+		return table.updateAndGet(current -> newTable.getVersion() > current.getVersion() ? newTable : current);
+	}
+
+	// Rates given as USD:1.08,GBP:0.85
+	private static Map<String, BigDecimal> parse(String rates) {
+		Map<String, BigDecimal> parsed = new LinkedHashMap<>();
+		for (String rate : rates.split(",")) {
+			if (rate.isBlank()) {
+				continue;
+			}
+			String[] currencyAndRate = rate.trim().split(":");
+			if (currencyAndRate.length != 2) {
+				throw new CurrencyConversionException("Expected CURRENCY:rate but got " + rate);
+			}
+			parsed.put(currencyAndRate[0].trim(), new BigDecimal(currencyAndRate[1].trim()));
+		}
+		return parsed;
+	}
+}
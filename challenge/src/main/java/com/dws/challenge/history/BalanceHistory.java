@@ -0,0 +1,558 @@
+package com.dws.challenge.history;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.HistoryDisabledException;
+import com.dws.challenge.service.BalanceChangeListener;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Balance history of every account, used to answer the balance of an account
+ * at a past time. Each balance change is appended to the account changes kept
+ * on the heap. A background compaction moves the changes older than the heap
+ * retention to a new immutable segment file, memory mapped for the queries.
+ * The segments having changes older than the retention are rewritten without
+ * them, except the last one of each account that gives its balance from the
+ * retention limit on. Consecutive segments of similar size are merged once
+ * there are too many.
+ *
+ * Queries read the heap, then the segments from the newest, without lock on the
+ * segments: the list of segments is replaced as a whole, and a segment is
+ * published before its changes are removed from the heap.
+ */
+@Slf4j
+@Component
+public class BalanceHistory implements BalanceChangeListener {
+
+	// Segments written by the flushes first to last
+	private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d+)-(\\d+)\\.seg");
+
+	// Merged segments stay well under the 2 GB of a mapping
+	private static final long MAX_MERGE_BYTES = 1L << 30;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${history.enabled:true}")
+	private boolean enabled;
+
+	@Value("${history.directory:}")
+	private String directory;
+
+	@Value("${history.heap-retention-ms:300000}")
+	private long heapRetentionMs;
+
+	@Value("${history.retention-ms:2592000000}")
+	private long retentionMs;
+
+	@Value("${history.compaction-interval-ms:60000}")
+	private long compactionIntervalMs;
+
+	@Value("${history.max-segments:16}")
+	private int maxSegments;
+
+	private final Map<String, RecentBalances> recentBalances = new ConcurrentHashMap<>();
+
+	// Oldest first, replaced as a whole
+	private volatile List<BalanceSegment> segments = List.of();
+
+	private Path segmentsDirectory;
+
+	// Directory created for this process, deleted on stop
+	private boolean temporaryDirectory;
+
+	private long nextSequence;
+
+	private ScheduledExecutorService compactor;
+
+	@PostConstruct
+	public void start() throws IOException {
+		if (!enabled) {
+			return;
+		}
+		if (directory.isBlank()) {
+			segmentsDirectory = Files.createTempDirectory("balance-history-");
+			temporaryDirectory = true;
+		} else {
+			segmentsDirectory = Files.createDirectories(Paths.get(directory));
+			loadSegments();
+		}
+		Gauge.builder("history.heap.accounts", recentBalances, Map::size)
+				.description("Accounts with balance changes on the heap").register(meterRegistry);
+		Gauge.builder("history.segments", this, history -> history.segments.size())
+				.description("Balance history segment files").register(meterRegistry);
+		if (compactionIntervalMs > 0) {
+			compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "balance-history-compactor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			compactor.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMs, compactionIntervalMs,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void stop() throws IOException {
+		if (compactor != null) {
+			compactor.shutdownNow();
+		}
+		if (temporaryDirectory) {
+			deleteSegments(segments);
+			Files.deleteIfExists(segmentsDirectory);
+		} else if (segmentsDirectory != null) {
+			// Changes still on the heap are loaded again on restart
+			flush(Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * This function is used for record the new balance of an account, called with
+	 * the account lock held so the changes of an account come in order
+	 *
+	 * @param accountId - account id
+	 * @param currency  - currency of account
+	 * @param balance   - new balance of account
+	 * @param time      - epoch millis of the change
+	 * @param epoch     - epoch of the balance snapshots, not used
+	 */
+	@Override
+	public void onBalanceChange(String accountId, String currency, BigDecimal balance, long time, long epoch) {
+		if (!enabled) {
+			return;
+		}
+		long unscaled;
+		try {
+			unscaled = balance.unscaledValue().longValueExact();
+		} catch (ArithmeticException e) {
+			log.warn("Balance of account {} has too many digits for the history", accountId);
+			return;
+		}
+		RecentBalances recent = recentBalances.computeIfAbsent(accountId, id -> new RecentBalances());
+		while (!recent.append(time, unscaled, balance.scale())) {
+			// Emptied by the compaction meanwhile, replaced by a new instance
+			recentBalances.remove(accountId, recent);
+			recent = recentBalances.computeIfAbsent(accountId, id -> new RecentBalances());
+		}
+	}
+
+	@Override
+	public synchronized void onAccountsCleared() {
+		if (!enabled) {
+			return;
+		}
+		recentBalances.clear();
+		List<BalanceSegment> cleared = segments;
+		segments = List.of();
+		deleteSegments(cleared);
+	}
+
+	/**
+	 * This function is used for get the balance of an account at a time
+	 *
+	 * @param accountId - account id
+	 * @param time      - epoch millis
+	 * @return BigDecimal - balance after the last change at or before time
+	 * @throws AccountIdNotExistException when the account has no change at or
+	 *                                    before time
+	 * @throws HistoryDisabledException   when the history is disabled
+	 */
+	public BigDecimal balanceAt(String accountId, long time) {
+		if (!enabled) {
+			throw new HistoryDisabledException("Balance history is disabled on this node!");
+		}
+		// Heap first, its changes removed meanwhile are in the segments read after
+		RecentBalances recent = recentBalances.get(accountId);
+		if (recent != null) {
+			BigDecimal balance = recent.balanceAt(time);
+			if (balance != null) {
+				return balance;
+			}
+		}
+		List<BalanceSegment> current = segments;
+		byte[] id = accountId.getBytes(UTF_8);
+		for (int i = current.size() - 1; i >= 0; i--) {
+			BigDecimal balance = current.get(i).balanceAt(id, time);
+			if (balance != null) {
+				return balance;
+			}
+		}
+		throw new AccountIdNotExistException(
+				"Account id " + accountId + " has no balance at " + Instant.ofEpochMilli(time) + "!");
+	}
+
+	/**
+	 * This function is used for move the changes older than the heap retention to
+	 * a new segment, drop the changes older than the retention, then merge
+	 * segments if there are too many
+	 *
+	 * @throws UncheckedIOException
+	 */
+	public synchronized void compact() {
+		if (!enabled) {
+			throw new IllegalStateException("Balance history is disabled");
+		}
+		long now = System.currentTimeMillis();
+		try {
+			flush(now - heapRetentionMs);
+			expire(now - retentionMs);
+			merge();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Balance history compaction failed", e);
+		}
+	}
+
+	private void compactQuietly() {
+		try {
+			compact();
+		} catch (RuntimeException e) {
+			log.error("Balance history compaction failed", e);
+		}
+	}
+
+	// Write the changes made before the time of all the accounts to a new segment
+	private void flush(long before) throws IOException {
+		List<AccountName> accounts = new ArrayList<>(recentBalances.size());
+		for (String accountId : recentBalances.keySet()) {
+			accounts.add(new AccountName(accountId, accountId.getBytes(UTF_8)));
+		}
+		accounts.sort(Comparator.comparing(AccountName::bytes, Arrays::compareUnsigned));
+
+		long sequence = nextSequence++;
+		List<Flushed> flushed = new ArrayList<>();
+		BalanceSegment segment;
+		try (BalanceSegmentWriter writer = new BalanceSegmentWriter(segmentPath(sequence, sequence), sequence,
+				sequence)) {
+			for (AccountName account : accounts) {
+				RecentBalances recent = recentBalances.get(account.accountId());
+				if (recent == null) {
+					continue;
+				}
+				RecentBalances.Changes changes = recent.before(before);
+				if (changes.size() == 0) {
+					continue;
+				}
+				writer.beginAccount(account.bytes());
+				for (int i = 0; i < changes.size(); i++) {
+					writer.add(changes.times()[i], changes.unscaled()[i], changes.scales()[i]);
+				}
+				flushed.add(new Flushed(account.accountId(), recent, changes.size()));
+			}
+			if (writer.isEmpty()) {
+				return;
+			}
+			segment = writer.commit();
+		}
+
+		List<BalanceSegment> newSegments = new ArrayList<>(segments);
+		newSegments.add(segment);
+		segments = List.copyOf(newSegments);
+		// Removed once readable from the segment
+		for (Flushed account : flushed) {
+			if (account.recent().removeOldest(account.count())) {
+				recentBalances.remove(account.accountId(), account.recent());
+			}
+		}
+		log.debug("Balance history segment {} written with {} changes of {} accounts", segment.getPath(),
+				segment.getEntryCount(), segment.getAccountCount());
+	}
+
+	// Rewrite the segments having changes older than the cutoff without them, but
+	// the last one of each account when no newer segment has an older change.
+	// Segments left without changes are deleted.
+	private void expire(long cutoff) throws IOException {
+		List<BalanceSegment> current = segments;
+		List<BalanceSegment> newSegments = new ArrayList<>(current.size());
+		List<BalanceSegment> dropped = new ArrayList<>();
+		boolean changed = false;
+		for (int i = 0; i < current.size(); i++) {
+			BalanceSegment segment = current.get(i);
+			if (segment.getMinTime() >= cutoff) {
+				newSegments.add(segment);
+				continue;
+			}
+			List<BalanceSegment> newer = current.subList(i + 1, current.size());
+			boolean[] floorKept = new boolean[segment.getAccountCount()];
+			int kept = 0;
+			for (int account = 0; account < segment.getAccountCount(); account++) {
+				int first = segment.firstEntry(account);
+				int entries = segment.entries(account);
+				int expired = expiredEntries(segment, first, entries, cutoff);
+				floorKept[account] = expired > 0 && !hasExpiredChange(newer, segment.name(account), cutoff);
+				kept += entries - expired + (floorKept[account] ? 1 : 0);
+			}
+			if (kept == segment.getEntryCount()) {
+				newSegments.add(segment);
+				continue;
+			}
+			if (kept == 0) {
+				dropped.add(segment);
+			} else {
+				newSegments.add(rewrite(segment, floorKept, cutoff));
+			}
+			changed = true;
+		}
+		if (!changed) {
+			return;
+		}
+		segments = List.copyOf(newSegments);
+		// A rewritten segment replaced its file, queries still reading the previous
+		// one keep their mapping
+		deleteSegments(dropped);
+		log.debug("Balance history changes before {} expired, {} segments dropped", Instant.ofEpochMilli(cutoff),
+				dropped.size());
+	}
+
+	// Same segment without the changes older than the cutoff but the kept floors
+	private BalanceSegment rewrite(BalanceSegment segment, boolean[] floorKept, long cutoff) throws IOException {
+		try (BalanceSegmentWriter writer = new BalanceSegmentWriter(
+				segmentPath(segment.getFirstSequence(), segment.getLastSequence()), segment.getFirstSequence(),
+				segment.getLastSequence())) {
+			for (int account = 0; account < segment.getAccountCount(); account++) {
+				int first = segment.firstEntry(account);
+				int end = first + segment.entries(account);
+				int from = first + expiredEntries(segment, first, end - first, cutoff);
+				if (floorKept[account]) {
+					from--;
+				}
+				if (from == end) {
+					continue;
+				}
+				writer.beginAccount(segment.name(account));
+				for (int entry = from; entry < end; entry++) {
+					writer.add(segment.time(entry), segment.unscaled(entry), segment.scale(entry));
+				}
+			}
+			return writer.commit();
+		}
+	}
+
+	// Changes of an account older than the cutoff, the first ones in time order
+	private static int expiredEntries(BalanceSegment segment, int first, int entries, long cutoff) {
+		int expired = 0;
+		while (expired < entries && segment.time(first + expired) < cutoff) {
+			expired++;
+		}
+		return expired;
+	}
+
+	private static boolean hasExpiredChange(List<BalanceSegment> newer, byte[] accountId, long cutoff) {
+		for (BalanceSegment segment : newer) {
+			if (segment.getMinTime() >= cutoff) {
+				continue;
+			}
+			int account = segment.findAccount(accountId);
+			if (account >= 0 && segment.time(segment.firstEntry(account)) < cutoff) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Merge consecutive segments into one when there are too many. The window is
+	// the run of consecutive segments of the lowest size tier having two of them
+	// at least, else the consecutive pair of smallest size, so the large segments
+	// are merged again only with segments of their size.
+	private void merge() throws IOException {
+		List<BalanceSegment> current = segments;
+		if (current.size() <= maxSegments) {
+			return;
+		}
+		int from = -1;
+		int count = 0;
+		int lowestTier = Integer.MAX_VALUE;
+		for (int i = 0; i < current.size();) {
+			int tier = sizeTier(current.get(i));
+			int run = 1;
+			long bytes = current.get(i).getSize();
+			while (i + run < current.size() && sizeTier(current.get(i + run)) == tier
+					&& bytes + current.get(i + run).getSize() <= MAX_MERGE_BYTES) {
+				bytes += current.get(i + run).getSize();
+				run++;
+			}
+			if (run >= 2 && tier < lowestTier) {
+				from = i;
+				count = run;
+				lowestTier = tier;
+			}
+			i += run;
+		}
+		if (from < 0) {
+			long smallest = MAX_MERGE_BYTES + 1;
+			for (int i = 0; i + 1 < current.size(); i++) {
+				long bytes = current.get(i).getSize() + current.get(i + 1).getSize();
+				if (bytes < smallest) {
+					from = i;
+					count = 2;
+					smallest = bytes;
+				}
+			}
+		}
+		if (from < 0) {
+			log.warn("Balance history segments are too large to be merged");
+			return;
+		}
+		List<BalanceSegment> merged = current.subList(from, from + count);
+		long firstSequence = merged.get(0).getFirstSequence();
+		long lastSequence = merged.get(count - 1).getLastSequence();
+		BalanceSegment segment;
+		try (BalanceSegmentWriter writer = new BalanceSegmentWriter(segmentPath(firstSequence, lastSequence),
+				firstSequence, lastSequence)) {
+			mergeInto(writer, merged);
+			segment = writer.commit();
+		}
+
+		List<BalanceSegment> newSegments = new ArrayList<>(current.size() - count + 1);
+		newSegments.addAll(current.subList(0, from));
+		newSegments.add(segment);
+		newSegments.addAll(current.subList(from + count, current.size()));
+		segments = List.copyOf(newSegments);
+		// Queries still reading the merged segments keep their mapping
+		deleteSegments(merged);
+		log.debug("Balance history segments {} to {} merged with {} changes of {} accounts", firstSequence,
+				lastSequence, segment.getEntryCount(), segment.getAccountCount());
+	}
+
+	// Segments within a factor of four in size are in the same tier
+	private static int sizeTier(BalanceSegment segment) {
+		return (63 - Long.numberOfLeadingZeros(Math.max(segment.getSize(), 1))) / 2;
+	}
+
+	// Accounts of all the segments in order, the changes of an account from the
+	// oldest segment to the newest
+	private static void mergeInto(BalanceSegmentWriter writer, List<BalanceSegment> merged) throws IOException {
+		PriorityQueue<MergeCursor> cursors = new PriorityQueue<>(
+				Comparator.comparing((MergeCursor cursor) -> cursor.name, Arrays::compareUnsigned)
+						.thenComparingInt(cursor -> cursor.order));
+		for (int i = 0; i < merged.size(); i++) {
+			if (merged.get(i).getAccountCount() > 0) {
+				cursors.add(new MergeCursor(i, merged.get(i)));
+			}
+		}
+		while (!cursors.isEmpty()) {
+			byte[] name = cursors.peek().name;
+			writer.beginAccount(name);
+			while (!cursors.isEmpty() && Arrays.equals(cursors.peek().name, name)) {
+				MergeCursor cursor = cursors.poll();
+				BalanceSegment segment = cursor.segment;
+				int first = segment.firstEntry(cursor.account);
+				int end = first + segment.entries(cursor.account);
+				for (int entry = first; entry < end; entry++) {
+					writer.add(segment.time(entry), segment.unscaled(entry), segment.scale(entry));
+				}
+				if (cursor.advance()) {
+					cursors.add(cursor);
+				}
+			}
+		}
+	}
+
+	// Map the segments left by a previous run. A merge interrupted before its
+	// inputs were deleted leaves segments covered by the merged one.
+	private void loadSegments() throws IOException {
+		List<BalanceSegment> loaded = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(segmentsDirectory)) {
+			for (Path file : files) {
+				Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+				if (matcher.matches()) {
+					loaded.add(BalanceSegment.map(file, Long.parseLong(matcher.group(1)),
+							Long.parseLong(matcher.group(2))));
+				} else if (file.getFileName().toString().endsWith(".tmp")) {
+					Files.delete(file);
+				}
+			}
+		}
+		loaded.sort(Comparator.comparingLong(BalanceSegment::getFirstSequence)
+				.thenComparing(Comparator.comparingLong(BalanceSegment::getLastSequence).reversed()));
+		List<BalanceSegment> kept = new ArrayList<>();
+		List<BalanceSegment> covered = new ArrayList<>();
+		for (BalanceSegment segment : loaded) {
+			if (!kept.isEmpty() && segment.getLastSequence() <= kept.get(kept.size() - 1).getLastSequence()) {
+				covered.add(segment);
+			} else {
+				kept.add(segment);
+			}
+		}
+		deleteSegments(covered);
+		segments = List.copyOf(kept);
+		nextSequence = kept.isEmpty() ? 0 : kept.get(kept.size() - 1).getLastSequence() + 1;
+		log.info("Balance history loaded {} segments from {}", kept.size(), segmentsDirectory);
+	}
+
+	private Path segmentPath(long firstSequence, long lastSequence) {
+		return segmentsDirectory.resolve(firstSequence + "-" + lastSequence + ".seg");
+	}
+
+	private static void deleteSegments(List<BalanceSegment> deleted) {
+		for (BalanceSegment segment : deleted) {
+			try {
+				Files.deleteIfExists(segment.getPath());
+			} catch (IOException e) {
+				log.warn("Balance history segment {} not deleted", segment.getPath(), e);
+			}
+		}
+	}
+
+	private record AccountName(String accountId, byte[] bytes) {
+	}
+
+	private record Flushed(String accountId, RecentBalances recent, int count) {
+	}
+
+	// Next account of a segment directory to merge
+	private static final class MergeCursor {
+
+		private final int order;
+
+		private final BalanceSegment segment;
+
+		private int account;
+
+		private byte[] name;
+
+		private MergeCursor(int order, BalanceSegment segment) {
+			this.order = order;
+			this.segment = segment;
+			this.name = segment.name(0);
+		}
+
+		private boolean advance() {
+			if (++account == segment.getAccountCount()) {
+				return false;
+			}
+			name = segment.name(account);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.dws.challenge.history;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable file of balance changes, memory mapped read only. The changes are
+ * grouped by account, accounts sorted by the bytes of their UTF-8 id, changes
+ * of an account sorted by time. All the records have a fixed size and are read
+ * in place from the mapping, a lookup allocates nothing but the balance found.
+ *
+ * <pre>
+ * header     magic, format, min time, max time, accounts, entries, offsets
+ * entries    time (long), unscaled balance (long), scale (int)
+ * index      time (long) of every INDEX_INTERVAL-th entry of each account
+ * directory  name offset, name length, first entry, entries, first index (int)
+ * names      UTF-8 account ids
+ * </pre>
+ */
+final class BalanceSegment {
+
+	static final int MAGIC = 0x42484953;
+
+	static final int FORMAT = 1;
+
+	static final int HEADER_BYTES = 48;
+
+	static final int ENTRY_BYTES = 20;
+
+	static final int DIRECTORY_BYTES = 20;
+
+	// Entries of an account covered by one sparse index time
+	static final int INDEX_INTERVAL = 64;
+
+	// Header fields
+	static final int MIN_TIME = 8;
+
+	static final int MAX_TIME = 16;
+
+	static final int ACCOUNT_COUNT = 24;
+
+	static final int ENTRY_COUNT = 28;
+
+	static final int INDEX_OFFSET = 32;
+
+	static final int DIRECTORY_OFFSET = 36;
+
+	static final int NAMES_OFFSET = 40;
+
+	private final Path path;
+
+	// Sequences of the first and last flush written in the segment
+	private final long firstSequence;
+
+	private final long lastSequence;
+
+	private final ByteBuffer buffer;
+
+	private final long minTime;
+
+	private final long maxTime;
+
+	private final int accountCount;
+
+	private final int entryCount;
+
+	private final int indexOffset;
+
+	private final int directoryOffset;
+
+	private final int namesOffset;
+
+	private BalanceSegment(Path path, long firstSequence, long lastSequence, ByteBuffer buffer) {
+		this.path = path;
+		this.firstSequence = firstSequence;
+		this.lastSequence = lastSequence;
+		this.buffer = buffer;
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+			throw new IllegalStateException("Not a balance segment " + path);
+		}
+		this.minTime = buffer.getLong(MIN_TIME);
+		this.maxTime = buffer.getLong(MAX_TIME);
+		this.accountCount = buffer.getInt(ACCOUNT_COUNT);
+		this.entryCount = buffer.getInt(ENTRY_COUNT);
+		this.indexOffset = buffer.getInt(INDEX_OFFSET);
+		this.directoryOffset = buffer.getInt(DIRECTORY_OFFSET);
+		this.namesOffset = buffer.getInt(NAMES_OFFSET);
+	}
+
+	/**
+	 * This function is used for map a segment file
+	 *
+	 * @param path          - segment file
+	 * @param firstSequence - first flush of the segment
+	 * @param lastSequence  - last flush of the segment
+	 * @return BalanceSegment - mapped segment
+	 * @throws IOException
+	 */
+	static BalanceSegment map(Path path, long firstSequence, long lastSequence) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// The mapping stays valid once the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new BalanceSegment(path, firstSequence, lastSequence, buffer);
+		}
+	}
+
+	/**
+	 * This function is used for find the balance of an account at a time
+	 *
+	 * @param accountId - UTF-8 bytes of the account id
+	 * @param time      - epoch millis
+	 * @return BigDecimal - balance of the last change at or before time, null when
+	 *         the segment has none
+	 */
+	BigDecimal balanceAt(byte[] accountId, long time) {
+		if (time < minTime) {
+			return null;
+		}
+		int account = findAccount(accountId);
+		if (account < 0) {
+			return null;
+		}
+		int entry = findEntry(account, time);
+		return entry < 0 ? null : BigDecimal.valueOf(unscaled(entry), scale(entry));
+	}
+
+	// Binary search of the directory, names compared in place
+	int findAccount(byte[] accountId) {
+		int low = 0;
+		int high = accountCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = compareName(middle, accountId);
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	// Last entry of account at or before time, the sparse index selects the block
+	// of INDEX_INTERVAL entries searched then
+	private int findEntry(int account, long time) {
+		int firstEntry = firstEntry(account);
+		int entries = entries(account);
+		int firstIndex = buffer.getInt(directory(account) + 16);
+		int indexes = (entries + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+
+		int block = lastAtOrBefore(indexOffset + firstIndex * Long.BYTES, Long.BYTES, indexes, time);
+		if (block < 0) {
+			return -1;
+		}
+		int blockStart = block * INDEX_INTERVAL;
+		int blockEntries = Math.min(INDEX_INTERVAL, entries - blockStart);
+		int entry = lastAtOrBefore(entryPosition(firstEntry + blockStart), ENTRY_BYTES, blockEntries, time);
+		return firstEntry + blockStart + entry;
+	}
+
+	// Index of the last of count times at or before time, -1 when all are after
+	private int lastAtOrBefore(int position, int stride, int count, long time) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.getLong(position + middle * stride) <= time) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
+	// Unsigned comparison of the bytes of the account name with the given id
+	private int compareName(int account, byte[] accountId) {
+		int directory = directory(account);
+		int name = namesOffset + buffer.getInt(directory);
+		int length = buffer.getInt(directory + 4);
+		int common = Math.min(length, accountId.length);
+		for (int i = 0; i < common; i++) {
+			int compare = Byte.compareUnsigned(buffer.get(name + i), accountId[i]);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return Integer.compare(length, accountId.length);
+	}
+
+	byte[] name(int account) {
+		int directory = directory(account);
+		byte[] name = new byte[buffer.getInt(directory + 4)];
+		buffer.get(namesOffset + buffer.getInt(directory), name);
+		return name;
+	}
+
+	int firstEntry(int account) {
+		return buffer.getInt(directory(account) + 8);
+	}
+
+	int entries(int account) {
+		return buffer.getInt(directory(account) + 12);
+	}
+
+	long time(int entry) {
+		return buffer.getLong(entryPosition(entry));
+	}
+
+	long unscaled(int entry) {
+		return buffer.getLong(entryPosition(entry) + 8);
+	}
+
+	int scale(int entry) {
+		return buffer.getInt(entryPosition(entry) + 16);
+	}
+
+	private int directory(int account) {
+		return directoryOffset + account * DIRECTORY_BYTES;
+	}
+
+	private static int entryPosition(int entry) {
+		return HEADER_BYTES + entry * ENTRY_BYTES;
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	long getFirstSequence() {
+		return firstSequence;
+	}
+
+	long getLastSequence() {
+		return lastSequence;
+	}
+
+	long getMinTime() {
+		return minTime;
+	}
+
+	long getMaxTime() {
+		return maxTime;
+	}
+
+	int getAccountCount() {
+		return accountCount;
+	}
+
+	int getEntryCount() {
+		return entryCount;
+	}
+
+	long getSize() {
+		return buffer.capacity();
+	}
+}
@@ -0,0 +1,187 @@
+package com.dws.challenge.history;
+
+import static com.dws.challenge.history.BalanceSegment.DIRECTORY_BYTES;
+import static com.dws.challenge.history.BalanceSegment.ENTRY_BYTES;
+import static com.dws.challenge.history.BalanceSegment.HEADER_BYTES;
+import static com.dws.challenge.history.BalanceSegment.INDEX_INTERVAL;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a segment file, see {@link BalanceSegment} for the layout. Accounts
+ * must be added in the unsigned order of their UTF-8 id bytes, the changes of
+ * an account in time order. The entries are streamed to the file, only the
+ * directory, the sparse index and the names are kept until the end. The file
+ * is written under a temporary name and moved in place once complete.
+ */
+final class BalanceSegmentWriter implements AutoCloseable {
+
+	private static final int BUFFER_BYTES = 64 * 1024;
+
+	private final Path path;
+
+	private final Path temporaryPath;
+
+	private final long firstSequence;
+
+	private final long lastSequence;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer entries = ByteBuffer.allocate(BUFFER_BYTES);
+
+	private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+
+	private int[] directory = new int[5 * 64];
+
+	private long[] index = new long[64];
+
+	private int accountCount;
+
+	private int entryCount;
+
+	private int indexCount;
+
+	private long minTime = Long.MAX_VALUE;
+
+	private long maxTime = Long.MIN_VALUE;
+
+	private byte[] lastAccountId;
+
+	// Directory slot of the account being written, -1 before the first
+	private int account = -1;
+
+	private boolean committed;
+
+	BalanceSegmentWriter(Path path, long firstSequence, long lastSequence) throws IOException {
+		this.path = path;
+		this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		this.firstSequence = firstSequence;
+		this.lastSequence = lastSequence;
+		this.channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		channel.position(HEADER_BYTES);
+	}
+
+	/**
+	 * This function is used for start the changes of the next account
+	 *
+	 * @param accountId - UTF-8 bytes of the account id
+	 */
+	void beginAccount(byte[] accountId) {
+		if (lastAccountId != null && Arrays.compareUnsigned(lastAccountId, accountId) >= 0) {
+			throw new IllegalStateException("Accounts must be written in ascending order");
+		}
+		lastAccountId = accountId;
+		account = accountCount++;
+		if (directory.length < accountCount * 5) {
+			directory = Arrays.copyOf(directory, directory.length * 2);
+		}
+		int slot = account * 5;
+		directory[slot] = names.size();
+		directory[slot + 1] = accountId.length;
+		directory[slot + 2] = entryCount;
+		directory[slot + 3] = 0;
+		directory[slot + 4] = indexCount;
+		names.writeBytes(accountId);
+	}
+
+	/**
+	 * This function is used for add a change of the current account
+	 *
+	 * @param time     - epoch millis, not before the previous change
+	 * @param unscaled - unscaled value of the balance
+	 * @param scale    - scale of the balance
+	 * @throws IOException
+	 */
+	void add(long time, long unscaled, int scale) throws IOException {
+		int slot = account * 5;
+		int accountEntries = directory[slot + 3];
+		if (accountEntries % INDEX_INTERVAL == 0) {
+			if (index.length == indexCount) {
+				index = Arrays.copyOf(index, indexCount * 2);
+			}
+			index[indexCount++] = time;
+		}
+		directory[slot + 3] = accountEntries + 1;
+		if ((long) HEADER_BYTES + (long) (entryCount + 1) * ENTRY_BYTES > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Segment " + path + " is full");
+		}
+		entryCount++;
+		minTime = Math.min(minTime, time);
+		maxTime = Math.max(maxTime, time);
+
+		if (entries.remaining() < ENTRY_BYTES) {
+			flushEntries();
+		}
+		entries.putLong(time).putLong(unscaled).putInt(scale);
+	}
+
+	boolean isEmpty() {
+		return entryCount == 0;
+	}
+
+	/**
+	 * This function is used for complete the file and map it
+	 *
+	 * @return BalanceSegment - written segment
+	 * @throws IOException
+	 */
+	BalanceSegment commit() throws IOException {
+		flushEntries();
+		int indexOffset = HEADER_BYTES + entryCount * ENTRY_BYTES;
+		int directoryOffset = Math.addExact(indexOffset, indexCount * Long.BYTES);
+		int namesOffset = Math.addExact(directoryOffset, accountCount * DIRECTORY_BYTES);
+		Math.addExact(namesOffset, names.size());
+
+		ByteBuffer tail = ByteBuffer.allocate(indexCount * Long.BYTES + accountCount * DIRECTORY_BYTES);
+		for (int i = 0; i < indexCount; i++) {
+			tail.putLong(index[i]);
+		}
+		for (int i = 0; i < accountCount * 5; i++) {
+			tail.putInt(directory[i]);
+		}
+		writeFully(tail.flip());
+		writeFully(ByteBuffer.wrap(names.toByteArray()));
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(BalanceSegment.MAGIC).putInt(BalanceSegment.FORMAT).putLong(minTime).putLong(maxTime)
+				.putInt(accountCount).putInt(entryCount).putInt(indexOffset).putInt(directoryOffset)
+				.putInt(namesOffset);
+		channel.position(0);
+		writeFully(header.clear());
+		channel.force(true);
+		channel.close();
+
+		Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE);
+		committed = true;
+		return BalanceSegment.map(path, firstSequence, lastSequence);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!committed) {
+			channel.close();
+			Files.deleteIfExists(temporaryPath);
+		}
+	}
+
+	private void flushEntries() throws IOException {
+		writeFully(entries.flip());
+		entries.clear();
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
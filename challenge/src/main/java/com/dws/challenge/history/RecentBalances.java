@@ -0,0 +1,128 @@
+package com.dws.challenge.history;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Balance changes of one account still on the heap, in time order. Appended
+ * with the account lock held, read by the queries and drained by the
+ * compaction, all under the monitor of this object.
+ */
+final class RecentBalances {
+
+	private long[] times = new long[4];
+
+	private long[] unscaled = new long[4];
+
+	private int[] scales = new int[4];
+
+	// Entries are at [start, end)
+	private int start;
+
+	private int end;
+
+	// Time of the last change, the changes of an account never go back in time
+	private long lastTime;
+
+	// Set once removed from the heap tier, a new instance takes the next changes
+	private boolean retired;
+
+	/**
+	 * This function is used for add a change
+	 *
+	 * @param time     - epoch millis
+	 * @param unscaled - unscaled value of the balance
+	 * @param scale    - scale of the balance
+	 * @return false when retired, the change must be added to a new instance
+	 */
+	synchronized boolean append(long time, long unscaled, int scale) {
+		if (retired) {
+			return false;
+		}
+		if (end == times.length) {
+			grow();
+		}
+		lastTime = Math.max(lastTime, time);
+		this.times[end] = lastTime;
+		this.unscaled[end] = unscaled;
+		this.scales[end] = scale;
+		end++;
+		return true;
+	}
+
+	/**
+	 * This function is used for find the balance at a time
+	 *
+	 * @param time - epoch millis
+	 * @return BigDecimal - balance of the last change at or before time, null when
+	 *         the heap has none
+	 */
+	synchronized BigDecimal balanceAt(long time) {
+		int low = start;
+		int high = end - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (times[middle] <= time) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high < start ? null : BigDecimal.valueOf(unscaled[high], scales[high]);
+	}
+
+	/**
+	 * This function is used for copy the changes made before a time, they stay on
+	 * the heap until removed
+	 *
+	 * @param time - epoch millis, exclusive
+	 * @return Changes - copy of the oldest changes, possibly empty
+	 */
+	synchronized Changes before(long time) {
+		int count = 0;
+		while (start + count < end && times[start + count] < time) {
+			count++;
+		}
+		return new Changes(Arrays.copyOfRange(times, start, start + count),
+				Arrays.copyOfRange(unscaled, start, start + count), Arrays.copyOfRange(scales, start, start + count));
+	}
+
+	/**
+	 * This function is used for remove the oldest changes once they are in a
+	 * segment
+	 *
+	 * @param count - number of changes to remove
+	 * @return true when no change is left and the instance is retired
+	 */
+	synchronized boolean removeOldest(int count) {
+		start += count;
+		if (start == end) {
+			start = 0;
+			end = 0;
+			retired = true;
+		}
+		return retired;
+	}
+
+	synchronized int size() {
+		return end - start;
+	}
+
+	// Compact then double the arrays if still more than half full
+	private void grow() {
+		int size = end - start;
+		int capacity = size * 2 > times.length ? times.length * 2 : times.length;
+		times = Arrays.copyOfRange(times, start, start + capacity);
+		unscaled = Arrays.copyOfRange(unscaled, start, start + capacity);
+		scales = Arrays.copyOfRange(scales, start, start + capacity);
+		start = 0;
+		end = size;
+	}
+
+	record Changes(long[] times, long[] unscaled, int[] scales) {
+
+		int size() {
+			return times.length;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.dws.challenge.replication;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.ReadOnlyReplicaException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.IAccountsService;
+
+/**
+ * Accounts service used on a replica. Reads are served from the replicated
+ * accounts, writes must be sent to the primary.
+ */
+@Primary
+@Profile("replica")
+@Service("replicaAccountsService")
+public class ReplicaAccountsService implements IAccountsService {
+
+	private static final String READ_ONLY_MESSAGE = "Replica is read only, send writes to the primary!";
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	@Override
+	public void createAccount(Account account) {
+		throw new ReadOnlyReplicaException(READ_ONLY_MESSAGE);
+	}
+
+	/**
+	 * This function is used for get account information from replicated accounts
+	 * 
+	 * @param accountId - account id
+	 * @return Account - Account information
+	 * @throws AccountIdNotExistException
+	 */
+	@Override
+	public Account getAccount(String accountId) {
+		return accountsRepository.getAccount(accountId);
+	}
+
+	/**
+	 * This function is used for get the version up to which the replicated
+	 * balances are visible. Balances are applied by a single thread, only the
+	 * update with the last version can still be in progress.
+	 * 
+	 * @param NA
+	 * @return long - version of the accounts
+	 * @throws NA
+	 */
+	@Override
+	public long getVersion() {
+		return Math.max(0, accountsRepository.getVersion() - 1);
+	}
+
+	@Override
+	public void clearAccounts() {
+		throw new ReadOnlyReplicaException(READ_ONLY_MESSAGE);
+	}
+
+	@Override
+	public TransferReceipt transfer(String accountFromId, String accountToId, BigDecimal amount) {
+		throw new ReadOnlyReplicaException(READ_ONLY_MESSAGE);
+	}
+}
@@ -0,0 +1,54 @@
+package com.dws.challenge.replication;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.dws.challenge.exception.InvalidReplicationTokenException;
+import com.dws.challenge.exception.ReplicaLagException;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Adds the replication lag to the replica reads. A read with the replication
+ * token of a write waits until the write is applied (read your writes).
+ */
+@Component
+@Profile("replica")
+public class ReplicaReadInterceptor implements HandlerInterceptor {
+
+	public static final String LAG_HEADER = "X-Replication-Lag-Ms";
+
+	@Autowired
+	private ReplicationReplica replicationReplica;
+
+	@Value("${replication.read-your-writes-timeout-ms:1000}")
+	private long readYourWritesTimeoutMs;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws Exception {
+		if (HttpMethod.GET.matches(request.getMethod())) {
+			String token = request.getHeader(ReplicationPrimary.TOKEN_HEADER);
+			if (token != null && !replicationReplica.awaitSequence(parseToken(token), readYourWritesTimeoutMs)) {
+				throw new ReplicaLagException("Replica has not applied replication token " + token + " yet!");
+			}
+			response.setHeader(LAG_HEADER, Long.toString(replicationReplica.getLagMillis()));
+			response.setHeader(ReplicationPrimary.TOKEN_HEADER,
+					Long.toString(replicationReplica.getAppliedSequence()));
+		}
+		return true;
+	}
+
+	private static long parseToken(String token) {
+		try {
+			return Long.parseLong(token);
+		} catch (NumberFormatException e) {
+			throw new InvalidReplicationTokenException("Replication token " + token + " is not a number!");
+		}
+	}
+}
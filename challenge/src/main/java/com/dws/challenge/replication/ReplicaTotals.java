@@ -0,0 +1,130 @@
+package com.dws.challenge.replication;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Money of the replicated accounts by currency, compared with the money
+ * expected by the primary at each of its cuts. The totals follow the applied
+ * balances. The changes of the epochs after a cut can be received before the
+ * cut, they are kept by epoch and taken out of the totals at the cut.
+ *
+ * A snapshot or a clear may include changes of any epoch up to the one it ends
+ * with, the cuts up to that epoch are not checked.
+ *
+ * Only used by the replication applier thread.
+ */
+final class ReplicaTotals {
+
+	// Sum of the applied balances by currency
+	private final Map<String, BigDecimal> totals = new HashMap<>();
+
+	// Balance changes by epoch and currency, since the last cut
+	private final NavigableMap<Long, Map<String, BigDecimal>> changes = new TreeMap<>();
+
+	// Money expected at the next cut, received before the cut
+	private final Map<String, BigDecimal> expected = new HashMap<>();
+
+	private int accounts;
+
+	// Cuts up to this epoch are not checked, none before the first snapshot
+	private long uncheckedUpTo = Long.MAX_VALUE;
+
+	/**
+	 * This function is used for forget all the accounts, on snapshot begin and
+	 * clear
+	 */
+	void clear() {
+		totals.clear();
+		changes.clear();
+		expected.clear();
+		accounts = 0;
+		uncheckedUpTo = Long.MAX_VALUE;
+	}
+
+	/**
+	 * This function is used for count a replicated account
+	 *
+	 * @param epoch    - epoch of the creation on the primary, 0 for a snapshot
+	 * @param currency - currency of the account
+	 * @param balance  - first balance of the account
+	 */
+	void created(long epoch, String currency, BigDecimal balance) {
+		accounts++;
+		changed(epoch, currency, BigDecimal.ZERO, balance);
+	}
+
+	/**
+	 * This function is used for count the change of a replicated balance
+	 *
+	 * @param epoch    - epoch of the change on the primary
+	 * @param currency - currency of the account
+	 * @param previous - balance before the change
+	 * @param balance  - balance after the change
+	 */
+	void changed(long epoch, String currency, BigDecimal previous, BigDecimal balance) {
+		BigDecimal change = balance.subtract(previous);
+		totals.merge(currency, change, BigDecimal::add);
+		changes.computeIfAbsent(epoch, e -> new HashMap<>()).merge(currency, change, BigDecimal::add);
+	}
+
+	/**
+	 * This function is used for not check the cuts including changes made before
+	 * a snapshot or a clear
+	 *
+	 * @param epoch - epoch of the primary at the end of the snapshot or clear
+	 */
+	void uncheckedUpTo(long epoch) {
+		uncheckedUpTo = epoch;
+	}
+
+	/**
+	 * This function is used for record the money expected in a currency at the
+	 * next cut
+	 *
+	 * @param currency - currency
+	 * @param amount   - expected money
+	 */
+	void expected(String currency, BigDecimal amount) {
+		expected.put(currency, amount);
+	}
+
+	/**
+	 * This function is used for get the totals at the end of the epoch of a cut,
+	 * the changes of the following epochs taken out
+	 *
+	 * @param cut - epoch of the cut
+	 * @return Map - sum of the balances at the cut by currency
+	 */
+	Map<String, BigDecimal> totalsAt(long cut) {
+		Map<String, BigDecimal> totalsAtCut = new HashMap<>(totals);
+		for (Map<String, BigDecimal> later : changes.tailMap(cut, false).values()) {
+			later.forEach((currency, change) -> totalsAtCut.merge(currency, change.negate(), BigDecimal::add));
+		}
+		changes.headMap(cut, true).clear();
+		return totalsAtCut;
+	}
+
+	/**
+	 * This function is used for get the money expected at the cut, received since
+	 * the previous cut
+	 *
+	 * @return Map - expected money by currency
+	 */
+	Map<String, BigDecimal> takeExpected() {
+		Map<String, BigDecimal> taken = new HashMap<>(expected);
+		expected.clear();
+		return taken;
+	}
+
+	boolean isChecked(long cut) {
+		return cut > uncheckedUpTo;
+	}
+
+	int getAccounts() {
+		return accounts;
+	}
+}
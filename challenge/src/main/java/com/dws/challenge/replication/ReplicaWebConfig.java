@@ -0,0 +1,20 @@
+package com.dws.challenge.replication;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@Profile("replica")
+public class ReplicaWebConfig implements WebMvcConfigurer {
+
+	@Autowired
+	private ReplicaReadInterceptor replicaReadInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(replicaReadInterceptor).addPathPatterns("/v1/accounts/**");
+	}
+}
@@ -0,0 +1,278 @@
+package com.dws.challenge.replication;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceChangeListener;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Primary side of the replication. Every balance change gets a sequence number
+ * and is queued for each connected replica. A replica first receives a snapshot
+ * of all the accounts, then the changes in sequence order. The write path never
+ * waits for a replica, a replica whose queue is full is disconnected and
+ * resynchronised with a new snapshot when it reconnects.
+ *
+ * The changes of different accounts are appended concurrently: the sequence is
+ * an atomic counter and each replica has its own lock free queue. Changes may
+ * be queued slightly out of sequence order, the sender of each replica puts
+ * them back in order before sending.
+ *
+ * Changes carry the epoch of their update and every reconciliation cut is sent
+ * with the money expected at the cut, so a replica checks its own balances at
+ * the same cut.
+ */
+@Slf4j
+@Component
+@Profile("primary")
+public class ReplicationPrimary implements BalanceChangeListener {
+
+	// Header returning the replication token of a write, a replica read with
+	// this token waits until the write is applied
+	public static final String TOKEN_HEADER = "X-Replication-Token";
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	// Looked up on use, the accounts service notifies this listener
+	@Autowired
+	private ObjectProvider<AccountsService> accountsService;
+
+	@Value("${replication.bind-address:localhost}")
+	private String bindAddress;
+
+	@Value("${replication.port:9090}")
+	private int port;
+
+	@Value("${replication.replica-queue-capacity:65536}")
+	private int replicaQueueCapacity;
+
+	@Value("${replication.heartbeat-ms:100}")
+	private long heartbeatMs;
+
+	private final List<ReplicaConnection> replicas = new CopyOnWriteArrayList<>();
+
+	// Assigned after the change is applied, the changes of an account get
+	// increasing sequences as they are made under the account lock
+	private final AtomicLong sequence = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	private ServerSocket serverSocket;
+
+	@PostConstruct
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+		Thread acceptor = new Thread(this::acceptReplicas, "replication-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		log.info("Replication primary listening on {}:{}", bindAddress, port);
+	}
+
+	@PreDestroy
+	public void stop() throws IOException {
+		running = false;
+		serverSocket.close();
+		replicas.forEach(ReplicaConnection::close);
+	}
+
+	/**
+	 * This function is used for get sequence of the last balance change. All the
+	 * writes completed before the call have a sequence lower or equal.
+	 * 
+	 * @return long - replication token
+	 */
+	public long getLastSequence() {
+		return sequence.get();
+	}
+
+	@Override
+	public void onBalanceChange(String accountId, String currency, BigDecimal balance, long time, long epoch) {
+		append(ReplicationRecord.CHANGE, time, epoch, accountId, currency, balance);
+	}
+
+	@Override
+	public void onAccountsCleared() {
+		// Changes of the epochs up to the current one may be before the clear
+		append(ReplicationRecord.CLEAR, System.currentTimeMillis(), accountsService.getObject().currentEpoch(), null,
+				null, null);
+	}
+
+	@Override
+	public void onCut(long cut, Map<String, BigDecimal> expected) {
+		long time = System.currentTimeMillis();
+		expected.forEach((currency, amount) -> append(ReplicationRecord.EXPECTED, time, cut, null, currency, amount));
+		append(ReplicationRecord.CUT, time, cut, null, null, null);
+	}
+
+	private void append(byte type, long time, long epoch, String accountId, String currency, BigDecimal balance) {
+		ReplicationRecord record = new ReplicationRecord(type, sequence.incrementAndGet(), time, epoch, accountId,
+				currency, balance);
+		for (ReplicaConnection replica : replicas) {
+			replica.offer(record);
+		}
+	}
+
+	private void acceptReplicas() {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				ReplicaConnection replica = new ReplicaConnection(socket);
+				Thread sender = new Thread(replica::send, "replication-sender-" + socket.getPort());
+				sender.setDaemon(true);
+				sender.start();
+			} catch (IOException e) {
+				if (running) {
+					log.warn("Replica connection failed", e);
+				}
+			}
+		}
+	}
+
+	private class ReplicaConnection {
+
+		private final Socket socket;
+
+		private final Queue<ReplicationRecord> queue = new ConcurrentLinkedQueue<>();
+
+		private final AtomicInteger queued = new AtomicInteger();
+
+		private volatile boolean overflowed;
+
+		private volatile Thread sender;
+
+		ReplicaConnection(Socket socket) {
+			this.socket = socket;
+		}
+
+		void offer(ReplicationRecord record) {
+			if (overflowed) {
+				return;
+			}
+			if (queued.incrementAndGet() > replicaQueueCapacity) {
+				// Replica is too slow, drop it instead of blocking the write path
+				overflowed = true;
+				log.warn("Replica {} is too slow and is disconnected", socket.getRemoteSocketAddress());
+				return;
+			}
+			queue.offer(record);
+			Thread waiting = sender;
+			if (waiting != null) {
+				LockSupport.unpark(waiting);
+			}
+		}
+
+		void send() {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+				long lastSequence = sendSnapshot(out);
+				// Changes queued out of order wait here for the missing sequences, those
+				// are being queued by concurrent writers
+				PriorityQueue<ReplicationRecord> pending = new PriorityQueue<>(
+						Comparator.comparingLong(ReplicationRecord::sequence));
+				while (running && !overflowed) {
+					ReplicationRecord record = poll();
+					if (record == null) {
+						ReplicationRecord.of(ReplicationRecord.HEARTBEAT, lastSequence, 0).writeTo(out);
+						out.flush();
+						continue;
+					}
+					// Included in the snapshot
+					if (record.sequence() <= lastSequence) {
+						continue;
+					}
+					pending.add(record);
+					while (!pending.isEmpty() && pending.peek().sequence() == lastSequence + 1) {
+						ReplicationRecord next = pending.poll();
+						next.writeTo(out);
+						lastSequence = next.sequence();
+					}
+					// Flush only once the queued changes are written
+					if (queue.isEmpty()) {
+						out.flush();
+					}
+				}
+			} catch (IOException e) {
+				log.info("Replica {} disconnected", socket.getRemoteSocketAddress());
+			} finally {
+				replicas.remove(this);
+				close();
+			}
+		}
+
+		// Next queued change, waiting up to the heartbeat interval
+		private ReplicationRecord poll() {
+			ReplicationRecord record = queue.poll();
+			if (record == null) {
+				sender = Thread.currentThread();
+				record = queue.poll();
+				if (record == null) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(heartbeatMs));
+					record = queue.poll();
+				}
+				sender = null;
+			}
+			if (record != null) {
+				queued.decrementAndGet();
+			}
+			return record;
+		}
+
+		// Register the replica and send all the accounts. A change with a sequence
+		// after the one read here is queued for the replica, as the replica is
+		// registered before. A change with a lower sequence was applied before and
+		// is in the snapshot. The snapshot ends with the current epoch, the changes
+		// it may include have this epoch or a lower one. With the database
+		// repository only committed balances are read, as the changes are appended
+		// once their transaction is committed.
+		private long sendSnapshot(DataOutputStream out) throws IOException {
+			replicas.add(this);
+			long snapshotSequence = sequence.get();
+			ReplicationRecord.of(ReplicationRecord.SNAPSHOT_BEGIN, snapshotSequence, 0).writeTo(out);
+			for (Account account : accountsRepository.getAccounts()) {
+				new ReplicationRecord(ReplicationRecord.SNAPSHOT_BALANCE, snapshotSequence, System.currentTimeMillis(),
+						0, account.getAccountId(), account.getCurrency(), account.getBalance()).writeTo(out);
+			}
+			ReplicationRecord.of(ReplicationRecord.SNAPSHOT_END, snapshotSequence,
+					accountsService.getObject().currentEpoch()).writeTo(out);
+			out.flush();
+			return snapshotSequence;
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				log.debug("Replica socket close failed", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.dws.challenge.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Record of the balance change stream shipped by the primary to the replicas.
+ * Sequence numbers are assigned by the primary in the order the changes are
+ * applied. The epoch is the one of the balance snapshots of the primary: of the
+ * update for a change, the current one for the end of a snapshot or a clear,
+ * the cut for the expected money.
+ */
+record ReplicationRecord(byte type, long sequence, long timestamp, long epoch, String accountId, String currency,
+		BigDecimal balance) {
+
+	// Start of snapshot, replica stages the accounts until the end of snapshot
+	static final byte SNAPSHOT_BEGIN = 1;
+
+	// Balance of an account taken by the snapshot
+	static final byte SNAPSHOT_BALANCE = 2;
+
+	// End of snapshot, sequence is the last change included in the snapshot,
+	// replica replaces its accounts with the staged ones
+	static final byte SNAPSHOT_END = 3;
+
+	// Balance change of an account
+	static final byte CHANGE = 4;
+
+	// All accounts cleared
+	static final byte CLEAR = 5;
+
+	// Sent when there is no change, keeps the replication lag up to date
+	static final byte HEARTBEAT = 6;
+
+	// Money expected in a currency at the end of epoch, balance is the amount
+	static final byte EXPECTED = 7;
+
+	// End of epoch, all the changes of the epoch and its expected money were sent
+	static final byte CUT = 8;
+
+	static ReplicationRecord of(byte type, long sequence, long epoch) {
+		return new ReplicationRecord(type, sequence, System.currentTimeMillis(), epoch, null, null, null);
+	}
+
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeByte(type);
+		out.writeLong(sequence);
+		out.writeLong(timestamp);
+		out.writeLong(epoch);
+		if (type == SNAPSHOT_BALANCE || type == CHANGE) {
+			out.writeUTF(accountId);
+		}
+		if (type == SNAPSHOT_BALANCE || type == CHANGE || type == EXPECTED) {
+			out.writeUTF(currency);
+			out.writeUTF(balance.toPlainString());
+		}
+	}
+
+	static ReplicationRecord readFrom(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		long sequence = in.readLong();
+		long timestamp = in.readLong();
+		long epoch = in.readLong();
+		String accountId = type == SNAPSHOT_BALANCE || type == CHANGE ? in.readUTF() : null;
+		if (type == SNAPSHOT_BALANCE || type == CHANGE || type == EXPECTED) {
+			return new ReplicationRecord(type, sequence, timestamp, epoch, accountId, in.readUTF(),
+					new BigDecimal(in.readUTF()));
+		}
+		return new ReplicationRecord(type, sequence, timestamp, epoch, null, null, null);
+	}
+}
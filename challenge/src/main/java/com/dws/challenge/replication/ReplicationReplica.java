@@ -0,0 +1,223 @@
+package com.dws.challenge.replication;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.BalanceReconciler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replica side of the replication. Tails the balance change stream of the
+ * primary and applies the changes in order to the local repository. The
+ * connection is retried forever, on every connection the primary sends a new
+ * snapshot. The snapshot is staged and replaces all the accounts at once when
+ * complete, meanwhile reads are served from the previous accounts and the lag
+ * keeps growing.
+ *
+ * The replicated balances are summed at every cut of the primary and reported
+ * by the reconciler with the money the primary expected at the cut.
+ */
+@Slf4j
+@Component
+@Profile("replica")
+public class ReplicationReplica {
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	@Autowired
+	private BalanceReconciler balanceReconciler;
+
+	@Value("${replication.primary-host:localhost}")
+	private String primaryHost;
+
+	@Value("${replication.port:9090}")
+	private int primaryPort;
+
+	@Value("${replication.reconnect-ms:1000}")
+	private long reconnectMs;
+
+	@Value("${reconciler.primary-cuts:false}")
+	private boolean primaryCuts;
+
+	private final ReplicaTotals replicaTotals = new ReplicaTotals();
+
+	// Accounts of the snapshot being received, null outside of a snapshot
+	private Map<String, Account> staging;
+
+	// Sequence of the last applied change
+	private volatile long appliedSequence;
+
+	// Primary time of the last applied change or heartbeat
+	private volatile long appliedTimestamp;
+
+	private volatile boolean running = true;
+
+	private volatile Socket socket;
+
+	private Thread applier;
+
+	@PostConstruct
+	public void start() {
+		applier = new Thread(this::tailPrimary, "replication-applier");
+		applier.setDaemon(true);
+		applier.start();
+	}
+
+	@PreDestroy
+	public void stop() throws IOException {
+		running = false;
+		applier.interrupt();
+		Socket current = socket;
+		if (current != null) {
+			current.close();
+		}
+	}
+
+	/**
+	 * This function is used for get the replication lag, time since the last
+	 * change or heartbeat of the primary was applied
+	 * 
+	 * @return long - lag in milliseconds, -1 when never connected
+	 */
+	public long getLagMillis() {
+		long timestamp = appliedTimestamp;
+		return timestamp == 0 ? -1 : Math.max(0, System.currentTimeMillis() - timestamp);
+	}
+
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	/**
+	 * This function is used for wait until the change with the given replication
+	 * token is applied
+	 * 
+	 * @param token     - replication token returned by a write on the primary
+	 * @param timeoutMs - maximum time to wait
+	 * @return true when applied / false on timeout
+	 */
+	public boolean awaitSequence(long token, long timeoutMs) throws InterruptedException {
+		if (appliedSequence >= token) {
+			return true;
+		}
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		synchronized (this) {
+			while (appliedSequence < token) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				wait(remaining);
+			}
+		}
+		return true;
+	}
+
+	private void tailPrimary() {
+		while (running) {
+			try (Socket primary = new Socket(primaryHost, primaryPort)) {
+				socket = primary;
+				log.info("Replica connected to primary {}:{}", primaryHost, primaryPort);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(primary.getInputStream()));
+				while (running) {
+					apply(ReplicationRecord.readFrom(in));
+				}
+			} catch (IOException e) {
+				if (running) {
+					log.warn("Replica lost connection to primary {}:{}", primaryHost, primaryPort);
+				}
+			}
+			try {
+				Thread.sleep(reconnectMs);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void apply(ReplicationRecord record) {
+		switch (record.type()) {
+		case ReplicationRecord.SNAPSHOT_BEGIN:
+			staging = new HashMap<>();
+			replicaTotals.clear();
+			break;
+		case ReplicationRecord.CLEAR:
+			accountsRepository.clearAccounts();
+			replicaTotals.clear();
+			replicaTotals.uncheckedUpTo(record.epoch());
+			break;
+		case ReplicationRecord.SNAPSHOT_END:
+			accountsRepository.replaceAccounts(staging.values());
+			staging = null;
+			replicaTotals.uncheckedUpTo(record.epoch());
+			break;
+		case ReplicationRecord.SNAPSHOT_BALANCE:
+			staging.put(record.accountId(), new Account(record.accountId(), record.balance(), record.currency()));
+			replicaTotals.created(record.epoch(), record.currency(), record.balance());
+			break;
+		case ReplicationRecord.CHANGE:
+			applyBalance(record);
+			break;
+		case ReplicationRecord.EXPECTED:
+			replicaTotals.expected(record.currency(), record.balance());
+			break;
+		case ReplicationRecord.CUT:
+			reconcile(record.epoch());
+			break;
+		default:
+			break;
+		}
+		// Snapshot balances are only visible as applied once the snapshot is complete
+		if (record.type() != ReplicationRecord.SNAPSHOT_BEGIN && record.type() != ReplicationRecord.SNAPSHOT_BALANCE) {
+			appliedTimestamp = record.timestamp();
+			// Records arrive in sequence order, the sequence restarts with the
+			// snapshot when the primary was restarted
+			appliedSequence = record.sequence();
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	private void applyBalance(ReplicationRecord record) {
+		BigDecimal previous;
+		try {
+			previous = accountsRepository.getAccount(record.accountId()).getBalance();
+		} catch (AccountIdNotExistException e) {
+			accountsRepository.createAccount(new Account(record.accountId(), record.balance(), record.currency()));
+			replicaTotals.created(record.epoch(), record.currency(), record.balance());
+			return;
+		}
+		accountsRepository.updateBalance(record.accountId(), record.balance());
+		replicaTotals.changed(record.epoch(), record.currency(), previous, record.balance());
+	}
+
+	// All the changes up to the cut were applied, the balances at the cut are the
+	// totals without the changes of the next epoch
+	private void reconcile(long cut) {
+		long started = System.nanoTime();
+		Map<String, BigDecimal> expected = replicaTotals.takeExpected();
+		Map<String, BigDecimal> totals = replicaTotals.totalsAt(cut);
+		if (primaryCuts) {
+			balanceReconciler.report(cut, replicaTotals.getAccounts(), totals, expected, System.nanoTime() - started,
+					!replicaTotals.isChecked(cut));
+		}
+	}
+}
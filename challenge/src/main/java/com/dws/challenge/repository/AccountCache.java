@@ -0,0 +1,68 @@
+package com.dws.challenge.repository;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Bounded read-through cache of accounts. Once the cache is full an arbitrary
+ * entry is evicted for every new entry. A load racing with an invalidation is not cached, so a
+ * value read before a commit can not be cached after the invalidation of the
+ * commit.
+ */
+class AccountCache {
+
+	private final int maximumSize;
+
+	private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+	// Incremented on every invalidation
+	private final AtomicLong invalidations = new AtomicLong();
+
+	AccountCache(int maximumSize) {
+		this.maximumSize = maximumSize;
+	}
+
+	// Cached account, null when not cached
+	Account peek(String accountId) {
+		return accounts.get(accountId);
+	}
+
+	Account get(String accountId, Supplier<Account> loader) {
+		Account account = accounts.get(accountId);
+		if (account != null) {
+			return account;
+		}
+		long invalidationsBeforeLoad = invalidations.get();
+		account = loader.get();
+		if (invalidations.get() == invalidationsBeforeLoad && accounts.putIfAbsent(accountId, account) == null) {
+			// Invalidated while being cached
+			if (invalidations.get() != invalidationsBeforeLoad) {
+				accounts.remove(accountId, account);
+				return account;
+			}
+			Iterator<String> victims = accounts.keySet().iterator();
+			while (accounts.size() > maximumSize && victims.hasNext()) {
+				String victim = victims.next();
+				if (!victim.equals(accountId)) {
+					victims.remove();
+				}
+			}
+		}
+		return account;
+	}
+
+	void invalidate(String accountId) {
+		invalidations.incrementAndGet();
+		accounts.remove(accountId);
+	}
+
+	void invalidateAll() {
+		invalidations.incrementAndGet();
+		accounts.clear();
+	}
+}
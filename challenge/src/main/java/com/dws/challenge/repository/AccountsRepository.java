@@ -1,6 +1,7 @@
 package com.dws.challenge.repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.AccountIdNotExistException;
@@ -58,4 +59,57 @@ public interface AccountsRepository {
 	 */
 	public boolean deposit(String accountId, BigDecimal amount) throws AccountIdNotExistException;
 
+	/**
+	 * This function is used for get all accounts information from in memory
+	 * database
+	 * 
+	 * @param NA
+	 * @return Collection - Accounts information
+	 * @throws NA
+	 */
+	public Collection<Account> getAccounts();
+
+	/**
+	 * This function is used for set balance of account. Used to apply the
+	 * balances shipped by the primary on a replica.
+	 * 
+	 * @param accountId - account id need to be updated
+	 * @param balance   - new balance of account
+	 * @return void
+	 * @throws AccountIdNotExistException
+	 */
+	public void updateBalance(String accountId, BigDecimal balance) throws AccountIdNotExistException;
+
+	/**
+	 * This function is used for replace all the accounts at once, a reader sees
+	 * the previous accounts or the new ones. Used to install the snapshot shipped
+	 * by the primary on a replica.
+	 * 
+	 * @param accounts - new accounts
+	 * @return void
+	 * @throws NA
+	 */
+	public void replaceAccounts(Collection<Account> accounts);
+
+	/**
+	 * This function is used for get the currency of account. The currency of an
+	 * account never changes.
+	 * 
+	 * @param accountId - account id
+	 * @return String - ISO 4217 currency code
+	 * @throws AccountIdNotExistException
+	 */
+	public String getCurrency(String accountId) throws AccountIdNotExistException;
+
+	/**
+	 * This function is used for get the highest version given to an account. A
+	 * new version, higher than all the previous ones, is given on every balance
+	 * update.
+	 * 
+	 * @param NA
+	 * @return long - highest version, 0 when no account was created
+	 * @throws NA
+	 */
+	public long getVersion();
+
 }
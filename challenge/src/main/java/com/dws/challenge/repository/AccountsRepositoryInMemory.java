@@ -5,20 +5,30 @@ import com.dws.challenge.exception.AccountIdNotExistException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientBalanceException;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+@Profile("!jdbc")
 @Repository("accountsRepository")
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-	private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+	// Replaced as a whole by a replica snapshot
+	private volatile Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+	// Last version given, not reset when the accounts are cleared
+	private final AtomicLong versions = new AtomicLong();
 
 	@Override
 	public void createAccount(Account account) throws DuplicateAccountIdException {
+		account.setVersion(versions.incrementAndGet());
 		Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
 		if (previousAccount != null) {
 			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
@@ -61,6 +71,7 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 		}
 		// withdraw amount from account balance
 		account.setBalance(account.getBalance().subtract(amount));
+		account.setVersion(versions.incrementAndGet());
 
 		// After successful withdraw return true
 		return true;
@@ -78,8 +89,44 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 		Account account = optAccount.get();
 		// deposit amount in account
 		account.setBalance(account.getBalance().add(amount));
+		account.setVersion(versions.incrementAndGet());
 		// After successful deposit return true
 		return true;
 	}
 
+	@Override
+	public Collection<Account> getAccounts() {
+		// Copy of accounts, safe to iterate while accounts are created
+		return new ArrayList<>(accounts.values());
+	}
+
+	@Override
+	public void updateBalance(String accountId, BigDecimal balance) throws AccountIdNotExistException {
+		// Get account from in memory data
+		Account account = getAccount(accountId);
+		// set new balance of account
+		account.setBalance(balance);
+		account.setVersion(versions.incrementAndGet());
+	}
+
+	@Override
+	public void replaceAccounts(Collection<Account> newAccounts) {
+		Map<String, Account> replacement = new ConcurrentHashMap<>();
+		for (Account account : newAccounts) {
+			account.setVersion(versions.incrementAndGet());
+			replacement.put(account.getAccountId(), account);
+		}
+		accounts = replacement;
+	}
+
+	@Override
+	public String getCurrency(String accountId) throws AccountIdNotExistException {
+		return getAccount(accountId).getCurrency();
+	}
+
+	@Override
+	public long getVersion() {
+		return versions.get();
+	}
+
 }
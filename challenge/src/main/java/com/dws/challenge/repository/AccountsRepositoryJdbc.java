@@ -0,0 +1,222 @@
+package com.dws.challenge.repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Currencies;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidCurrencyException;
+
+/**
+ * Accounts repository on an embedded database. Balances are updated with a
+ * single conditional statement, there is no read-modify-write. Reads go through
+ * a bounded cache invalidated when the transaction updating the account
+ * commits.
+ *
+ * Versions are taken from a database sequence by the update statements. The
+ * accounts service commits the transaction before releasing the account locks,
+ * and waits for the lock holders after reading the version, so every update
+ * given a version up to the returned one is committed.
+ */
+@Profile("jdbc")
+@Repository("accountsRepository")
+public class AccountsRepositoryJdbc implements AccountsRepository {
+
+	private static final RowMapper<Account> ACCOUNT_ROW_MAPPER = (rs, rowNum) -> {
+		String currency = rs.getString("currency");
+		Account account = new Account(rs.getString("account_id"), toMinorUnit(rs.getBigDecimal("balance"), currency),
+				currency);
+		account.setVersion(rs.getLong("version"));
+		return account;
+	};
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final AccountCache accountCache;
+
+	public AccountsRepositoryJdbc(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			@Value("${accounts.cache.maximum-size:10000}") int cacheSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.accountCache = new AccountCache(cacheSize);
+	}
+
+	// The column keeps the most decimal places of any currency, the balance is
+	// returned to the minor unit of its currency. A balance stored before the
+	// amounts and the currencies were checked, with more decimal places or in an
+	// unknown currency, is returned as is.
+	private static BigDecimal toMinorUnit(BigDecimal balance, String currency) {
+		int digits;
+		try {
+			digits = Currencies.fractionDigits(currency);
+		} catch (InvalidCurrencyException e) {
+			return balance;
+		}
+		BigDecimal stripped = balance.stripTrailingZeros();
+		return stripped.scale() > digits ? stripped : balance.setScale(digits, RoundingMode.UNNECESSARY);
+	}
+
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		try {
+			jdbcTemplate.update(
+					"INSERT INTO account (account_id, balance, currency, version)"
+							+ " VALUES (?, ?, ?, NEXT VALUE FOR account_version)",
+					account.getAccountId(), account.getBalance(), account.getCurrency());
+		} catch (DuplicateKeyException e) {
+			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+		}
+	}
+
+	@Override
+	public Account getAccount(String accountId) throws AccountIdNotExistException {
+		// Do not cache values read by a transaction, they may not be committed yet
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			return loadAccount(accountId);
+		}
+		return accountCache.get(accountId, () -> loadAccount(accountId));
+	}
+
+	@Override
+	public void clearAccounts() {
+		jdbcTemplate.update("DELETE FROM account");
+		accountCache.invalidateAll();
+	}
+
+	@Override
+	public boolean withdraw(String accountId, BigDecimal amount)
+			throws AccountIdNotExistException, InsufficientBalanceException {
+		// withdraw amount only when account has sufficient balance, in one statement
+		int updated = jdbcTemplate.update(
+				"UPDATE account SET balance = balance - ?, version = NEXT VALUE FOR account_version"
+						+ " WHERE account_id = ? AND balance >= ?",
+				amount, accountId, amount);
+		if (updated == 0) {
+			// Check account is present or not to report the right error
+			if (!exists(accountId)) {
+				throw new AccountIdNotExistException("Account id " + accountId + " not exists!");
+			}
+			throw new InsufficientBalanceException("Account id " + accountId + " has insufficient balance!");
+		}
+		invalidateOnCommit(accountId);
+		return true;
+	}
+
+	@Override
+	public boolean deposit(String accountId, BigDecimal amount) throws AccountIdNotExistException {
+		int updated = jdbcTemplate.update(
+				"UPDATE account SET balance = balance + ?, version = NEXT VALUE FOR account_version WHERE account_id = ?",
+				amount, accountId);
+		if (updated == 0) {
+			throw new AccountIdNotExistException("Account id " + accountId + " not exists!");
+		}
+		invalidateOnCommit(accountId);
+		return true;
+	}
+
+	@Override
+	public Collection<Account> getAccounts() {
+		return jdbcTemplate.query("SELECT account_id, balance, currency, version FROM account", ACCOUNT_ROW_MAPPER);
+	}
+
+	@Override
+	public void updateBalance(String accountId, BigDecimal balance) throws AccountIdNotExistException {
+		int updated = jdbcTemplate.update(
+				"UPDATE account SET balance = ?, version = NEXT VALUE FOR account_version WHERE account_id = ?", balance,
+				accountId);
+		if (updated == 0) {
+			throw new AccountIdNotExistException("Account id " + accountId + " not exists!");
+		}
+		invalidateOnCommit(accountId);
+	}
+
+	// All the rows are replaced in one transaction, readers see the previous rows
+	// until it commits
+	@Override
+	public void replaceAccounts(Collection<Account> accounts) {
+		transactionTemplate.executeWithoutResult(status -> {
+			jdbcTemplate.update("DELETE FROM account");
+			jdbcTemplate.batchUpdate(
+					"INSERT INTO account (account_id, balance, currency, version)"
+							+ " VALUES (?, ?, ?, NEXT VALUE FOR account_version)",
+					accounts, 1024, (statement, account) -> {
+						statement.setString(1, account.getAccountId());
+						statement.setBigDecimal(2, account.getBalance());
+						statement.setString(3, account.getCurrency());
+					});
+			invalidateAllOnCommit();
+		});
+	}
+
+	@Override
+	public String getCurrency(String accountId) throws AccountIdNotExistException {
+		// The currency never changes, a cached account is used even within a
+		// transaction
+		Account account = accountCache.peek(accountId);
+		return (account != null ? account : getAccount(accountId)).getCurrency();
+	}
+
+	@Override
+	public long getVersion() {
+		// Versions of the committed updates only
+		return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(version), 0) FROM account", Long.class);
+	}
+
+	private Account loadAccount(String accountId) {
+		try {
+			return jdbcTemplate.queryForObject("SELECT account_id, balance, currency, version FROM account WHERE account_id = ?",
+					ACCOUNT_ROW_MAPPER, accountId);
+		} catch (EmptyResultDataAccessException e) {
+			throw new AccountIdNotExistException("Account id " + accountId + " not exists!");
+		}
+	}
+
+	private boolean exists(String accountId) {
+		List<Integer> found = jdbcTemplate.queryForList("SELECT 1 FROM account WHERE account_id = ?", Integer.class,
+				accountId);
+		return !found.isEmpty();
+	}
+
+	private void invalidateAllOnCommit() {
+		accountCache.invalidateAll();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				accountCache.invalidateAll();
+			}
+		});
+	}
+
+	// Cached account is dropped now and once the transaction is completed, a
+	// reader can not keep the balance from before the commit
+	private void invalidateOnCommit(String accountId) {
+		accountCache.invalidate(accountId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					accountCache.invalidate(accountId);
+				}
+			});
+		}
+	}
+}
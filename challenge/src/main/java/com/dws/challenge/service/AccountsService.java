@@ -1,32 +1,108 @@
 package com.dws.challenge.service;
 
+import com.dws.challenge.diagnostics.LockContentionMonitor;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Currencies;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.events.TransferEventRingBuffer;
 import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.CurrencyConversionException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.InvalidCurrencyException;
+import com.dws.challenge.fx.FxRates;
 import com.dws.challenge.repository.AccountsRepository;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
 
 @Service("accountsService")
 public class AccountsService implements IAccountsService {
 
+	// Number of lock stripes, must be a power of two
+	private static final int LOCK_STRIPES = 1024;
+
+	private final Object[] lockStripes = new Object[LOCK_STRIPES];
+
+	{
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			lockStripes[i] = new Object();
+		}
+	}
+
 	@Autowired
 	private AccountsRepository accountsRepository;
 
+	@Autowired
+	private LockContentionMonitor lockContentionMonitor;
+
+	@Autowired
+	private TransferEventRingBuffer transferEventRingBuffer;
+
+	@Autowired
+	private BalanceSnapshots balanceSnapshots;
+
+	@Autowired
+	private FxRates fxRates;
+
+	@Autowired
+	private CachedClock cachedClock;
+
+	@Autowired(required = false)
+	private List<BalanceChangeListener> balanceChangeListeners = List.of();
+
+	// Transaction manager of the database repository, none in memory
+	@Autowired
+	private ObjectProvider<PlatformTransactionManager> transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	// Transfer ids of this node, the random prefix tells the nodes apart
+	private final String transferIdPrefix = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16) + "-";
+
+	private final AtomicLong transferSequence = new AtomicLong();
+
+	@PostConstruct
+	public void start() {
+		PlatformTransactionManager manager = transactionManager.getIfAvailable();
+		transactionTemplate = manager != null ? new TransactionTemplate(manager) : null;
+	}
+
 	/**
 	 * This function is used for create account in memory database
 	 * 
 	 * @param account - account information
 	 * @return void
 	 * @throws DuplicateAccountIdException
+	 * @throws InvalidAmountException
+	 * @throws InvalidCurrencyException
 	 */
 	@Override
 	public void createAccount(Account account) {
-		this.accountsRepository.createAccount(account);
+		// Also rejects a currency without ISO 4217 minor unit, the FX rates and the
+		// reconciliation could not handle it
+		checkScale(account.getBalance(), account.getCurrency());
+		synchronized (lockStripes[lockStripe(account.getAccountId())]) {
+			long epoch = balanceSnapshots.currentEpoch();
+			balanceSnapshots.beforeCreate(epoch, account);
+			this.accountsRepository.createAccount(account);
+			balanceSnapshots.created(epoch, account.getCurrency(), account.getBalance());
+			balanceChanged(account, cachedClock.millis(), epoch);
+		}
 	}
 
 	/**
@@ -51,53 +127,327 @@ public class AccountsService implements IAccountsService {
 	@Override
 	public void clearAccounts() {
 		accountsRepository.clearAccounts();
+		balanceSnapshots.clear();
+		balanceChangeListeners.forEach(BalanceChangeListener::onAccountsCleared);
 	}
 
 	/**
-	 * This function is used for transfer amount from to account
+	 * This function is used for transfer amount from to account. With a database
+	 * repository withdraw and deposit are done in one transaction, committed
+	 * before the account locks are released, so the listeners, the event stream
+	 * and the receipt only see committed balances. The amount is in the currency
+	 * of the from account, it is converted with the current FX rates when the to
+	 * account has another currency.
 	 * 
 	 * @param accountFromId - account id need to be withdraw amount
 	 * @param accountToId   - account id need to be deposit amount
 	 * @param amount        - amount need to be withdraw and deposit in account
-	 * @return true / false
+	 * @return TransferReceipt - transfer id and balances left by the transfer
 	 * @throws AccountIdNotExistException
 	 * @throws InsufficientBalanceException
+	 * @throws CurrencyConversionException
+	 * @throws InvalidAmountException
 	 */
 	@Override
-	public boolean transfer(String accountFromId, String accountToId, BigDecimal amount)
+	public TransferReceipt transfer(String accountFromId, String accountToId, BigDecimal amount)
 			throws AccountIdNotExistException, InsufficientBalanceException {
 
 		// Used a lock per account to avoid deadlock I have used acquire locks in
-		// the same order always.
-
-		Object accountFromIdLock = accountFromId;
-		Object accountToIdLlock = accountToId;
-		// First lock for account from id
-		synchronized (accountFromIdLock) {
-			// Second lock for account to id
-			synchronized (accountToIdLlock) {
-				// withdraw amount from account
-				// If error occurred at withdraw time will not affect amount
-				if (accountsRepository.withdraw(accountFromId, amount)) {
+		// the same order always. The request ids are new String instances on every
+		// call, so the locks are taken on a fixed set of stripes selected by id.
+		int accountFromStripe = lockStripe(accountFromId);
+		int accountToStripe = lockStripe(accountToId);
+		Object firstLock = lockStripes[Math.min(accountFromStripe, accountToStripe)];
+		Object secondLock = lockStripes[Math.max(accountFromStripe, accountToStripe)];
+
+		// Lock wait and hold times are measured for a sample of the transfers only
+		boolean sampled = lockContentionMonitor.sample();
+		long lockRequested = sampled ? System.nanoTime() : 0L;
+		long lockAcquired = lockRequested;
+		long lockReleased = lockRequested;
+		TransferReceipt receipt;
+		try {
+			// First lock for lower stripe
+			synchronized (firstLock) {
+				// Second lock for higher stripe
+				synchronized (secondLock) {
+					if (sampled) {
+						lockAcquired = System.nanoTime();
+					}
 					try {
-						// After successful withdraw amount need to be deposit in to account
-						accountsRepository.deposit(accountToId, amount);
-					} catch (AccountIdNotExistException | InsufficientBalanceException e) {
-
-						// While depositing any error occurred need to revert the withdraw transaction
-						accountsRepository.deposit(accountFromId, amount);
-						throw e;
-					} catch (Exception e) {
-						// While depositing any error occurred need to revert the withdraw transaction
-						accountsRepository.deposit(accountFromId, amount);
-						throw e;
+						long epoch = balanceSnapshots.currentEpoch();
+						receipt = inTransaction(() -> withdrawAndDeposit(epoch, accountFromId, accountToId, amount));
+						transferCommitted(epoch, receipt);
+					} finally {
+						if (sampled) {
+							lockReleased = System.nanoTime();
+						}
 					}
 				}
 			}
+		} finally {
+			if (sampled) {
+				lockContentionMonitor.record(accountFromId, accountToId, lockAcquired - lockRequested,
+						lockReleased - lockAcquired);
+			}
+		}
+
+		// return receipt after successful transfer amount from to account
+		return receipt;
+	}
+
+	/**
+	 * This function is used for transfer a group of queued transfers. The locks of
+	 * all the accounts of the group are acquired once, in the same order always,
+	 * then the transfers are applied in submission order. A failed transfer is
+	 * reverted as a single transfer and does not stop the others. With a database
+	 * repository the group is one transaction, committed before the locks are
+	 * released.
+	 * 
+	 * @param transfers - transfers of the group, failure message set on failed
+	 *                  ones
+	 * @return void
+	 */
+	public void transferGroup(List<QueuedTransfer> transfers) {
+		int[] stripes = transfers.stream()
+				.flatMapToInt(transfer -> IntStream.of(lockStripe(transfer.getAccountFromId()),
+						lockStripe(transfer.getAccountToId())))
+				.distinct().sorted().toArray();
+		lockAndRun(stripes, 0, () -> {
+			long epoch = balanceSnapshots.currentEpoch();
+			List<TransferReceipt> receipts = inTransaction(() -> {
+				List<TransferReceipt> applied = new ArrayList<>(transfers.size());
+				for (QueuedTransfer transfer : transfers) {
+					try {
+						applied.add(withdrawAndDeposit(epoch, transfer.getAccountFromId(), transfer.getAccountToId(),
+								transfer.getAmount()));
+					} catch (RuntimeException e) {
+						transfer.fail(e.getMessage());
+					}
+				}
+				return applied;
+			});
+			receipts.forEach(receipt -> transferCommitted(epoch, receipt));
+		});
+	}
+
+	// Run the action in a transaction committed on return with a database
+	// repository, directly in memory
+	private <T> T inTransaction(Supplier<T> action) {
+		return transactionTemplate != null ? transactionTemplate.execute(status -> action.get()) : action.get();
+	}
+
+	// Acquire the stripes from the given index in ascending order, then run the
+	// action
+	private void lockAndRun(int[] stripes, int index, Runnable action) {
+		if (index == stripes.length) {
+			action.run();
+			return;
+		}
+		synchronized (lockStripes[stripes[index]]) {
+			lockAndRun(stripes, index + 1, action);
+		}
+	}
+
+	// Must be called with the locks of both accounts held
+	private TransferReceipt withdrawAndDeposit(long epoch, String accountFromId, String accountToId, BigDecimal amount) {
+		// Currencies never change, the credit is computed before any update so a
+		// missing rate does not need a revert
+		String fromCurrency = accountsRepository.getCurrency(accountFromId);
+		String toCurrency = accountsRepository.getCurrency(accountToId);
+		checkScale(amount, fromCurrency);
+		BigDecimal credit = fromCurrency.equals(toCurrency) ? amount
+				: fxRates.convert(amount, fromCurrency, toCurrency);
+
+		balanceSnapshots.beforeUpdate(epoch, accountFromId);
+		// withdraw amount from account
+		// If error occurred at withdraw time will not affect amount
+		if (accountsRepository.withdraw(accountFromId, amount)) {
+			try {
+				// After successful withdraw amount need to be deposit in to account
+				balanceSnapshots.beforeUpdate(epoch, accountToId);
+				accountsRepository.deposit(accountToId, credit);
+			} catch (AccountIdNotExistException | InsufficientBalanceException e) {
+
+				// While depositing any error occurred need to revert the withdraw transaction
+				accountsRepository.deposit(accountFromId, amount);
+				throw e;
+			} catch (Exception e) {
+				// While depositing any error occurred need to revert the withdraw transaction
+				accountsRepository.deposit(accountFromId, amount);
+				throw e;
+			}
+			// Balances and time read once for the listeners and the receipt, so the
+			// history has the change at the time of the receipt
+			BigDecimal accountFromBalance = accountsRepository.getAccount(accountFromId).getBalance();
+			BigDecimal accountToBalance = accountsRepository.getAccount(accountToId).getBalance();
+			return new TransferReceipt(transferIdPrefix + transferSequence.incrementAndGet(), accountFromId,
+					accountToId, amount, fromCurrency, credit, toCurrency, accountFromBalance, accountToBalance,
+					cachedClock.millis());
 		}
+		throw new InsufficientBalanceException("Account id " + accountFromId + " has insufficient balance!");
+	}
+
+	// Record the conversion, notify the new balances and publish the transfer to
+	// the event stream once committed, with the locks of both accounts held
+	private void transferCommitted(long epoch, TransferReceipt receipt) {
+		if (!receipt.getCurrency().equals(receipt.getCreditedCurrency())) {
+			balanceSnapshots.converted(epoch, receipt.getCurrency(), receipt.getAmount(),
+					receipt.getCreditedCurrency(), receipt.getCreditedAmount());
+		}
+		for (BalanceChangeListener balanceChangeListener : balanceChangeListeners) {
+			balanceChangeListener.onBalanceChange(receipt.getAccountFromId(), receipt.getCurrency(),
+					receipt.getAccountFromBalance(), receipt.getTimestamp(), epoch);
+			balanceChangeListener.onBalanceChange(receipt.getAccountToId(), receipt.getCreditedCurrency(),
+					receipt.getAccountToBalance(), receipt.getTimestamp(), epoch);
+		}
+		transferEventRingBuffer.publish(receipt.getAccountFromId(), receipt.getAccountToId(), receipt.getAmount());
+	}
+
+	/**
+	 * This function is used for withdraw amount from a single account under the
+	 * account lock. Used by the cluster participant to reserve the amount of a
+	 * cross partition transfer, the amount is counted as leaving this node.
+	 * 
+	 * @param accountId - account id need to be withdraw amount
+	 * @param amount    - amount need to be withdraw from account
+	 * @return true / false
+	 * @throws AccountIdNotExistException
+	 * @throws InsufficientBalanceException
+	 * @throws InvalidAmountException
+	 */
+	public boolean withdraw(String accountId, BigDecimal amount)
+			throws AccountIdNotExistException, InsufficientBalanceException {
+		synchronized (lockStripes[lockStripe(accountId)]) {
+			String currency = accountsRepository.getCurrency(accountId);
+			checkScale(amount, currency);
+			long epoch = balanceSnapshots.currentEpoch();
+			balanceSnapshots.beforeUpdate(epoch, accountId);
+			accountsRepository.withdraw(accountId, amount);
+			balanceSnapshots.moved(epoch, currency, amount.negate());
+			balanceChanged(accountId, epoch);
+			return true;
+		}
+	}
+
+	/**
+	 * This function is used for deposit amount in a single account under the
+	 * account lock. Used by the cluster participant to apply or refund the amount
+	 * of a cross partition transfer, the amount is counted as entering this node.
+	 * 
+	 * @param accountId - account id need to be deposit amount
+	 * @param amount    - amount need to be deposit in account
+	 * @return true / false
+	 * @throws AccountIdNotExistException
+	 */
+	public boolean deposit(String accountId, BigDecimal amount) throws AccountIdNotExistException {
+		synchronized (lockStripes[lockStripe(accountId)]) {
+			String currency = accountsRepository.getCurrency(accountId);
+			long epoch = balanceSnapshots.currentEpoch();
+			balanceSnapshots.beforeUpdate(epoch, accountId);
+			accountsRepository.deposit(accountId, amount);
+			balanceSnapshots.moved(epoch, currency, amount);
+			balanceChanged(accountId, epoch);
+			return true;
+		}
+	}
+
+	/**
+	 * This function is used for convert an amount to the currency of an account
+	 * with the current FX rates. Used by the cluster participant to credit the
+	 * amount of a cross partition transfer.
+	 * 
+	 * @param accountId - account id the amount will be deposit in
+	 * @param amount    - amount to convert
+	 * @param currency  - currency of the amount
+	 * @return BigDecimal - amount in the currency of account
+	 * @throws AccountIdNotExistException
+	 * @throws CurrencyConversionException
+	 */
+	public BigDecimal convertTo(String accountId, BigDecimal amount, String currency) {
+		String accountCurrency = accountsRepository.getCurrency(accountId);
+		return accountCurrency.equals(currency) ? amount : fxRates.convert(amount, currency, accountCurrency);
+	}
+
+	/**
+	 * This function is used for end the current epoch of the balance snapshots.
+	 * Every lock stripe is acquired and released once, so the updates of the
+	 * ended epoch are all done on return.
+	 * 
+	 * @return epoch of the cut
+	 */
+	public long advanceEpoch() {
+		long cut = balanceSnapshots.advance();
+		awaitLockHolders();
+		return cut;
+	}
+
+	/**
+	 * This function is used for get the current epoch of the balance snapshots.
+	 * The balance updates started before the call have this epoch or a lower one.
+	 * 
+	 * @return long - current epoch
+	 */
+	public long currentEpoch() {
+		return balanceSnapshots.currentEpoch();
+	}
+
+	/**
+	 * This function is used for get the version up to which all the balance
+	 * updates are visible. Versions are given with the account lock held, the
+	 * updates given a version up to the current one are done once every lock
+	 * stripe has been acquired and released.
+	 * 
+	 * @param NA
+	 * @return long - version of the accounts
+	 * @throws NA
+	 */
+	@Override
+	public long getVersion() {
+		long version = accountsRepository.getVersion();
+		awaitLockHolders();
+		return version;
+	}
+
+	// Acquire and release every lock stripe once, the updates started before are
+	// done on return. Only one stripe is held at a time, transfers are not stopped.
+	private void awaitLockHolders() {
+		for (Object lockStripe : lockStripes) {
+			synchronized (lockStripe) {
+				// Wait for the holder, if any
+			}
+		}
+	}
+
+	// Notify the new balance of account, must be called with the account lock held
+	private void balanceChanged(String accountId, long epoch) {
+		if (!balanceChangeListeners.isEmpty()) {
+			balanceChanged(accountsRepository.getAccount(accountId), cachedClock.millis(), epoch);
+		}
+	}
+
+	private void balanceChanged(Account account, long time, long epoch) {
+		BigDecimal balance = account.getBalance();
+		for (BalanceChangeListener balanceChangeListener : balanceChangeListeners) {
+			balanceChangeListener.onBalanceChange(account.getAccountId(), account.getCurrency(), balance, time,
+					epoch);
+		}
+	}
+
+	// Amounts are kept to the minor unit of their currency, in memory as in the
+	// database
+	private static void checkScale(BigDecimal amount, String currency) {
+		int digits = Currencies.fractionDigits(currency);
+		if (amount.stripTrailingZeros().scale() > digits) {
+			throw new InvalidAmountException(
+					"Amount " + amount + " has more than " + digits + " decimal places for currency " + currency + "!");
+		}
+	}
 
-		// return true after successful transfer amount from to account
-		return true;
+	private static int lockStripe(String accountId) {
+		int hash = accountId.hashCode();
+		// Spread the high bits so that ids with a common suffix use different stripes
+		return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
 	}
 
 }
@@ -0,0 +1,225 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.exception.TransferIdNotExistException;
+import com.dws.challenge.exception.TransferQueueFullException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Async transfer submission. Transfers are queued and answered right away with
+ * a transfer id, a worker drains the queue in batches and applies consecutive
+ * transfers in groups, the account locks of a group are acquired only once.
+ * Outcomes are kept for a retention period for the status requests, at most
+ * max-retained of them.
+ *
+ * Groups are applied on the local accounts service. Disabled with the cluster
+ * and replica profiles, whose transfers must go through their own accounts
+ * service, the transfers are then applied synchronously.
+ */
+@Slf4j
+@Service
+public class AsyncTransferService {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private EmailNotificationService emailNotificationService;
+
+	@Value("${transfers.async.enabled:true}")
+	private boolean enabled;
+
+	@Value("${transfers.async.queue-capacity:100000}")
+	private int queueCapacity;
+
+	@Value("${transfers.async.batch-size:512}")
+	private int batchSize;
+
+	@Value("${transfers.async.group-size:32}")
+	private int groupSize;
+
+	@Value("${transfers.async.retention-ms:600000}")
+	private long retentionMs;
+
+	@Value("${transfers.async.max-retained:100000}")
+	private int maxRetained;
+
+	private BlockingQueue<QueuedTransfer> queue;
+
+	private final Map<String, QueuedTransfer> transfers = new ConcurrentHashMap<>();
+
+	// Applied transfers in completion order, oldest are removed after retention
+	private final Queue<QueuedTransfer> applied = new ConcurrentLinkedQueue<>();
+
+	// Size of applied, only used by the worker
+	private int appliedCount;
+
+	private Timer completedLatency;
+
+	private Timer failedLatency;
+
+	private volatile boolean running = true;
+
+	private Thread worker;
+
+	@PostConstruct
+	public void start() {
+		if (!enabled) {
+			return;
+		}
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		Gauge.builder("transfers.async.queue.depth", queue, BlockingQueue::size)
+				.description("Transfers waiting to be applied").register(meterRegistry);
+		completedLatency = Timer.builder("transfers.async.latency").description("Time from submission to outcome")
+				.tag("status", "completed").publishPercentiles(0.5, 0.99).register(meterRegistry);
+		failedLatency = Timer.builder("transfers.async.latency").description("Time from submission to outcome")
+				.tag("status", "failed").publishPercentiles(0.5, 0.99).register(meterRegistry);
+		worker = new Thread(this::applyQueuedTransfers, "async-transfer-worker");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	@PreDestroy
+	public void stop() {
+		running = false;
+		if (worker != null) {
+			worker.interrupt();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * This function is used for queue a transfer
+	 * 
+	 * @param accountFromId - account id need to be withdraw amount
+	 * @param accountToId   - account id need to be deposit amount
+	 * @param amount        - amount need to be withdraw and deposit in account
+	 * @return QueuedTransfer - queued transfer with its id
+	 * @throws TransferQueueFullException
+	 * @throws IllegalStateException when async submission is disabled
+	 */
+	public QueuedTransfer submit(String accountFromId, String accountToId, BigDecimal amount) {
+		if (!enabled) {
+			throw new IllegalStateException("Async transfer submission is disabled");
+		}
+		QueuedTransfer transfer = new QueuedTransfer(UUID.randomUUID().toString(), accountFromId, accountToId,
+				amount);
+		transfers.put(transfer.getTransferId(), transfer);
+		if (!queue.offer(transfer)) {
+			transfers.remove(transfer.getTransferId());
+			throw new TransferQueueFullException("Transfer queue is full, retry later!");
+		}
+		return transfer;
+	}
+
+	/**
+	 * This function is used for get a queued transfer
+	 * 
+	 * @param transferId - transfer id returned on submission
+	 * @return QueuedTransfer - queued transfer with its status
+	 * @throws TransferIdNotExistException
+	 */
+	public QueuedTransfer getTransfer(String transferId) {
+		QueuedTransfer transfer = transfers.get(transferId);
+		if (transfer == null) {
+			throw new TransferIdNotExistException("Transfer id " + transferId + " not exists!");
+		}
+		return transfer;
+	}
+
+	private void applyQueuedTransfers() {
+		List<QueuedTransfer> batch = new ArrayList<>(batchSize);
+		while (running) {
+			try {
+				QueuedTransfer first = queue.poll(1, TimeUnit.SECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, batchSize - 1);
+					for (int from = 0; from < batch.size(); from += groupSize) {
+						applyGroup(batch.subList(from, Math.min(from + groupSize, batch.size())));
+					}
+					batch.clear();
+				}
+				evictExpired();
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void applyGroup(List<QueuedTransfer> group) {
+		try {
+			accountsService.transferGroup(group);
+		} catch (RuntimeException e) {
+			// Group could not be committed, none of its transfers is applied
+			log.error("Transfer group could not be applied", e);
+			group.forEach(transfer -> transfer.fail(e.getMessage()));
+		}
+		for (QueuedTransfer transfer : group) {
+			transfer.finish();
+			(transfer.getStatus() == QueuedTransfer.Status.COMPLETED ? completedLatency : failedLatency)
+					.record(System.nanoTime() - transfer.getSubmittedNanos(), TimeUnit.NANOSECONDS);
+			applied.add(transfer);
+			appliedCount++;
+			if (transfer.getStatus() == QueuedTransfer.Status.COMPLETED) {
+				notifyAccountHolders(transfer);
+			}
+		}
+	}
+
+	// Notification sent to both account holders, with a message containing id of
+	// the other account and amount transferred
+	private void notifyAccountHolders(QueuedTransfer transfer) {
+		String message = "Amount transfer of " + transfer.getAmount() + " from " + transfer.getAccountFromId() + " to "
+				+ transfer.getAccountToId() + " account has been successfully completed, transfer id "
+				+ transfer.getTransferId();
+		try {
+			emailNotificationService.notifyAboutTransfer(accountsService.getAccount(transfer.getAccountFromId()),
+					message);
+			emailNotificationService.notifyAboutTransfer(accountsService.getAccount(transfer.getAccountToId()),
+					message);
+		} catch (RuntimeException e) {
+			log.warn("Notification of transfer {} failed", transfer.getTransferId(), e);
+		}
+	}
+
+	// Forget the outcomes older than retention, and the oldest ones above
+	// max-retained
+	private void evictExpired() {
+		long expiredBefore = System.currentTimeMillis() - retentionMs;
+		QueuedTransfer oldest;
+		while ((oldest = applied.peek()) != null
+				&& (oldest.getCompletedMillis() < expiredBefore || appliedCount > maxRetained)) {
+			applied.poll();
+			appliedCount--;
+			transfers.remove(oldest.getTransferId());
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Listener notified by the accounts service of every balance change. It is
+ * called while the account lock is held, so changes of one account are always
+ * notified in the order they were applied. Implementations must not block.
+ */
+public interface BalanceChangeListener {
+
+	/**
+	 * This function is used for notify the new balance of a created or updated
+	 * account
+	 * 
+	 * @param accountId - account id
+	 * @param currency  - currency of account
+	 * @param balance   - new balance of account
+	 * @param time      - epoch millis of the change, read once under the lock
+	 *                  and also given to the transfer receipt
+	 * @param epoch     - epoch of the balance snapshots the change belongs to
+	 */
+	void onBalanceChange(String accountId, String currency, BigDecimal balance, long time, long epoch);
+
+	/**
+	 * This function is used for notify the money expected in each currency at
+	 * the end of an epoch. Called by the reconciler once the changes of the epoch
+	 * were all notified, changes of the next epoch may have been notified before.
+	 *
+	 * @param cut      - epoch of the cut
+	 * @param expected - expected money by currency
+	 */
+	default void onCut(long cut, Map<String, BigDecimal> expected) {
+	}
+
+	/**
+	 * This function is used for notify all accounts were cleared
+	 */
+	default void onAccountsCleared() {
+	}
+}
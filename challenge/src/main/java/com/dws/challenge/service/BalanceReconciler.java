@@ -0,0 +1,264 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.ReconciliationReport.CurrencyTotals;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background check that the transfers never create or destroy money. Every run
+ * ends the current epoch of the balance snapshots, sums the balances of all the
+ * accounts at that cut by currency and compares each sum with the money
+ * created and converted in that currency up to the cut. Transfers go on during
+ * the run.
+ *
+ * The accounts are summed in chunks by a small pool of threads. Each thread
+ * pauses after a chunk so that it is busy at most the CPU budget share of the
+ * time, the run uses at most threads x budget cores.
+ *
+ * The expected money of every cut is also given to the balance change
+ * listeners, a replica compares it with its own balances at the same cut
+ * instead of running on a schedule.
+ */
+@Slf4j
+@Service
+public class BalanceReconciler {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	@Autowired
+	private BalanceSnapshots balanceSnapshots;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired(required = false)
+	private List<BalanceChangeListener> balanceChangeListeners = List.of();
+
+	@Value("${reconciler.interval-ms:60000}")
+	private long intervalMs;
+
+	@Value("${reconciler.threads:2}")
+	private int threads;
+
+	@Value("${reconciler.cpu-budget:0.25}")
+	private double cpuBudget;
+
+	@Value("${reconciler.chunk-size:1024}")
+	private int chunkSize;
+
+	// Balances are replicated, they are compared at the cuts of the primary
+	@Value("${reconciler.primary-cuts:false}")
+	private boolean primaryCuts;
+
+	private final AtomicReference<ReconciliationReport> lastReport = new AtomicReference<>();
+
+	private ScheduledExecutorService scheduler;
+
+	private ExecutorService workers;
+
+	private Timer duration;
+
+	// Currencies with a drift gauge, only used by the reconcile thread
+	private final Set<String> driftGauges = new HashSet<>();
+
+	@PostConstruct
+	public void start() {
+		duration = Timer.builder("reconciler.duration").description("Time of a reconciliation run")
+				.register(meterRegistry);
+		if (!balanceSnapshots.isEnabled() || primaryCuts) {
+			return;
+		}
+		if (cpuBudget <= 0 || cpuBudget > 1) {
+			throw new IllegalArgumentException("reconciler.cpu-budget must be in (0, 1]");
+		}
+		AtomicInteger threadNumber = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "balance-reconciler-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "balance-reconciler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::reconcileQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * This function is used for reconcile the balances now
+	 *
+	 * @return ReconciliationReport - sums at the cut and drift
+	 * @throws IllegalStateException when the reconciler is disabled or the
+	 *                               balances are replicated
+	 */
+	public synchronized ReconciliationReport reconcile() {
+		if (!balanceSnapshots.isEnabled()) {
+			throw new IllegalStateException("Reconciler is disabled");
+		}
+		if (primaryCuts) {
+			throw new IllegalStateException("Replicated balances are reconciled at the cuts of the primary");
+		}
+		long started = System.nanoTime();
+		long generation = balanceSnapshots.getGeneration();
+		long cut = accountsService.advanceEpoch();
+		Map<String, BigDecimal> expected = balanceSnapshots.expectedTotals(cut);
+		// The changes of the cut epoch were all notified by the advance
+		balanceChangeListeners.forEach(listener -> listener.onCut(cut, expected));
+		List<Account> accounts = new ArrayList<>(accountsRepository.getAccounts());
+
+		Map<String, BigDecimal> totals = sumInParallel(cut, accounts);
+		boolean interrupted = generation != balanceSnapshots.getGeneration();
+		return report(cut, accounts.size(), totals, expected, System.nanoTime() - started, interrupted);
+	}
+
+	/**
+	 * This function is used for report the balances summed at a cut of the
+	 * primary by a replica
+	 *
+	 * @param cut          - epoch of the cut
+	 * @param accounts     - number of accounts summed
+	 * @param totals       - sum of the balances at the cut by currency
+	 * @param expected     - money expected by the primary by currency
+	 * @param elapsedNanos - time taken by the sum
+	 * @param interrupted  - true when the balances at the cut are not all known,
+	 *                     the accounts were cleared or resynchronised
+	 * @return ReconciliationReport - sums at the cut and drift
+	 */
+	public synchronized ReconciliationReport report(long cut, int accounts, Map<String, BigDecimal> totals,
+			Map<String, BigDecimal> expected, long elapsedNanos, boolean interrupted) {
+		duration.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+		Map<String, CurrencyTotals> currencies = new TreeMap<>();
+		for (String currency : union(totals.keySet(), expected.keySet())) {
+			BigDecimal total = totals.getOrDefault(currency, BigDecimal.ZERO);
+			BigDecimal expectedTotal = expected.getOrDefault(currency, BigDecimal.ZERO);
+			currencies.put(currency, new CurrencyTotals(total, expectedTotal, total.subtract(expectedTotal)));
+		}
+		ReconciliationReport report = new ReconciliationReport(cut, Instant.now().toString(), accounts,
+				currencies, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), interrupted);
+		lastReport.set(report);
+		currencies.keySet().forEach(this::registerDriftGauge);
+		if (interrupted) {
+			log.info("Reconciliation of epoch {} interrupted, accounts were cleared or resynchronised", cut);
+		} else if (!report.isConserved()) {
+			log.error("Balance drift at epoch {} over {} accounts: {}", cut, accounts, currencies);
+		} else {
+			log.debug("Balances conserved at epoch {} over {} accounts in {} ms: {}", cut, accounts,
+					report.durationMillis(), currencies);
+		}
+		return report;
+	}
+
+	public ReconciliationReport getLastReport() {
+		return lastReport.get();
+	}
+
+	private void reconcileQuietly() {
+		try {
+			reconcile();
+		} catch (RuntimeException e) {
+			log.error("Reconciliation failed", e);
+		}
+	}
+
+	// One gauge per currency, registered when the currency is first reconciled
+	private void registerDriftGauge(String currency) {
+		if (driftGauges.add(currency)) {
+			Gauge.builder("reconciler.drift", lastReport, report -> {
+				CurrencyTotals totals = report.get().currencies().get(currency);
+				return totals == null ? 0 : totals.drift().doubleValue();
+			}).tag("currency", currency)
+					.description("Sum of the balances minus the expected money at the last cut")
+					.register(meterRegistry);
+		}
+	}
+
+	private static Set<String> union(Set<String> first, Set<String> second) {
+		Set<String> union = new HashSet<>(first);
+		union.addAll(second);
+		return union;
+	}
+
+	private Map<String, BigDecimal> sumInParallel(long cut, List<Account> accounts) {
+		AtomicInteger nextChunk = new AtomicInteger();
+		int chunks = (accounts.size() + chunkSize - 1) / chunkSize;
+		List<Future<Map<String, BigDecimal>>> partials = new ArrayList<>(threads);
+		for (int i = 0; i < Math.min(threads, chunks); i++) {
+			partials.add(workers.submit(() -> sumChunks(cut, accounts, nextChunk, chunks)));
+		}
+		Map<String, BigDecimal> totals = new HashMap<>();
+		try {
+			for (Future<Map<String, BigDecimal>> partial : partials) {
+				partial.get().forEach((currency, sum) -> totals.merge(currency, sum, BigDecimal::add));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Reconciliation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Reconciliation failed", e.getCause());
+		}
+		return totals;
+	}
+
+	// Sum the chunks taken in turn with the other threads, pausing after each so
+	// that the thread stays in the CPU budget
+	private Map<String, BigDecimal> sumChunks(long cut, List<Account> accounts, AtomicInteger nextChunk,
+			int chunks) throws InterruptedException {
+		Map<String, BigDecimal> sums = new HashMap<>();
+		int chunk;
+		while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+			long busyStarted = System.nanoTime();
+			int end = Math.min(accounts.size(), (chunk + 1) * chunkSize);
+			for (int i = chunk * chunkSize; i < end; i++) {
+				Account account = accounts.get(i);
+				sums.merge(account.getCurrency(), balanceSnapshots.balanceAt(cut, account), BigDecimal::add);
+			}
+			long busyNanos = System.nanoTime() - busyStarted;
+			TimeUnit.NANOSECONDS.sleep((long) (busyNanos * (1 - cpuBudget) / cpuBudget));
+		}
+		return sums;
+	}
+}
@@ -0,0 +1,279 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Currencies;
+import com.dws.challenge.repository.AccountsRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Epoch versioned balances, used to read a consistent cut of all the balances
+ * while transfers go on. Every balance update is tagged with the current epoch,
+ * read with the account lock held. The first update of an account in a new epoch
+ * saves the balance it had before, so the balances at the end of the previous
+ * epoch can be read after the epoch is advanced: the saved balance for the
+ * accounts updated since, the current balance for the others.
+ *
+ * The money expected in each currency is the money of the accounts found at
+ * startup and created since, plus the amounts received from other currencies
+ * and other cluster nodes, minus the amounts sent to them, counted by epoch too.
+ *
+ * Only one cut is read at a time, by the reconciler.
+ */
+@Component
+class BalanceSnapshots {
+
+	// Balance of an account before its first update in epoch
+	private static final class Cell {
+
+		private BigDecimal saved;
+
+		// Written after saved
+		private volatile long epoch;
+
+		private Cell(long epoch, BigDecimal saved) {
+			this.saved = saved;
+			this.epoch = epoch;
+		}
+	}
+
+	// Money entering and leaving a currency, by epoch parity
+	private static final class CurrencyFlows {
+
+		private final int fractionDigits;
+
+		// Initial balances of the created accounts
+		@SuppressWarnings("unchecked")
+		private final AtomicReference<BigDecimal>[] created = new AtomicReference[] {
+				new AtomicReference<>(BigDecimal.ZERO), new AtomicReference<>(BigDecimal.ZERO) };
+
+		// Amounts received minus sent, converted or moved between the cluster
+		// nodes, in minor units
+		private final LongAdder[] received = { new LongAdder(), new LongAdder() };
+
+		private CurrencyFlows(String currency) {
+			this.fractionDigits = Currencies.fractionDigits(currency);
+		}
+
+		private BigDecimal drain(long cut) {
+			int parity = (int) (cut & 1);
+			return created[parity].getAndSet(BigDecimal.ZERO)
+					.add(BigDecimal.valueOf(received[parity].sumThenReset(), fractionDigits));
+		}
+	}
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	private final boolean enabled;
+
+	private volatile long epoch;
+
+	private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+
+	private final Map<String, CurrencyFlows> flows = new ConcurrentHashMap<>();
+
+	// Money expected by currency up to the last cut
+	private final Map<String, BigDecimal> expectedTotals = new TreeMap<>();
+
+	// Incremented when the accounts are cleared
+	private volatile long generation;
+
+	BalanceSnapshots(@Value("${reconciler.interval-ms:60000}") long intervalMs) {
+		this.enabled = intervalMs > 0;
+	}
+
+	/**
+	 * This function is used for count the money of the accounts stored before
+	 * startup, read before any update
+	 */
+	@PostConstruct
+	public synchronized void start() {
+		if (!enabled) {
+			return;
+		}
+		for (Account account : accountsRepository.getAccounts()) {
+			expectedTotals.merge(account.getCurrency(), account.getBalance(), BigDecimal::add);
+		}
+	}
+
+	/**
+	 * This function is used for get the epoch of an update, must be called with
+	 * the lock of the updated accounts held
+	 *
+	 * @return epoch of the update
+	 */
+	long currentEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * This function is used for save the balance of an account before its first
+	 * update in epoch, must be called with the account lock held
+	 *
+	 * @param epoch     - epoch of the update
+	 * @param accountId - account id need to be updated
+	 */
+	void beforeUpdate(long epoch, String accountId) {
+		if (!enabled) {
+			return;
+		}
+		Cell cell = cells.get(accountId);
+		if (cell == null) {
+			// Accounts cleared, or created before the snapshots were cleared
+			cells.putIfAbsent(accountId, new Cell(epoch, accountsRepository.getAccount(accountId).getBalance()));
+		} else if (cell.epoch < epoch) {
+			cell.saved = accountsRepository.getAccount(accountId).getBalance();
+			cell.epoch = epoch;
+		}
+	}
+
+	/**
+	 * This function is used for record a new account before it is stored, must be
+	 * called with the account lock held. The account did not exist in the previous
+	 * epochs, its saved balance is zero.
+	 *
+	 * @param epoch   - epoch of the update
+	 * @param account - account need to be created
+	 */
+	void beforeCreate(long epoch, Account account) {
+		if (enabled) {
+			// An existing account keeps its cell, the create fails as duplicate
+			cells.putIfAbsent(account.getAccountId(), new Cell(epoch, BigDecimal.ZERO));
+		}
+	}
+
+	/**
+	 * This function is used for count the money of a created account, must be
+	 * called with the account lock held
+	 *
+	 * @param epoch    - epoch of the update
+	 * @param currency - currency of the account
+	 * @param balance  - initial balance of the account
+	 */
+	void created(long epoch, String currency, BigDecimal balance) {
+		if (enabled) {
+			flowsOf(currency).created[(int) (epoch & 1)].accumulateAndGet(balance, BigDecimal::add);
+		}
+	}
+
+	/**
+	 * This function is used for count the money moved between two currencies by
+	 * a transfer, must be called with the account locks held
+	 *
+	 * @param epoch        - epoch of the update
+	 * @param fromCurrency - currency of the withdrawn amount
+	 * @param debit        - withdrawn amount, whole minor units
+	 * @param toCurrency   - currency of the deposited amount
+	 * @param credit       - deposited amount, whole minor units
+	 */
+	void converted(long epoch, String fromCurrency, BigDecimal debit, String toCurrency, BigDecimal credit) {
+		if (enabled) {
+			int parity = (int) (epoch & 1);
+			CurrencyFlows from = flowsOf(fromCurrency);
+			CurrencyFlows to = flowsOf(toCurrency);
+			from.received[parity].add(-debit.movePointRight(from.fractionDigits).longValueExact());
+			to.received[parity].add(credit.movePointRight(to.fractionDigits).longValueExact());
+		}
+	}
+
+	/**
+	 * This function is used for count the money of a cross partition transfer
+	 * entering or leaving the accounts of this cluster node, must be called with
+	 * the account lock held
+	 *
+	 * @param epoch    - epoch of the update
+	 * @param currency - currency of the account
+	 * @param amount   - deposited amount, negative when withdrawn, whole minor
+	 *                 units
+	 */
+	void moved(long epoch, String currency, BigDecimal amount) {
+		if (enabled) {
+			CurrencyFlows currencyFlows = flowsOf(currency);
+			currencyFlows.received[(int) (epoch & 1)]
+					.add(amount.movePointRight(currencyFlows.fractionDigits).longValueExact());
+		}
+	}
+
+	/**
+	 * This function is used for start a new epoch. The caller must wait for the
+	 * updates of the previous epoch still holding account locks before reading the
+	 * cut.
+	 *
+	 * @return epoch of the cut, the previous epoch
+	 */
+	synchronized long advance() {
+		return epoch++;
+	}
+
+	/**
+	 * This function is used for get the money expected in each currency up to the
+	 * end of the epoch of the cut, once the epoch is over
+	 *
+	 * @param cut - epoch of the cut
+	 * @return Map - expected money by currency
+	 */
+	synchronized Map<String, BigDecimal> expectedTotals(long cut) {
+		for (Map.Entry<String, CurrencyFlows> currencyFlows : flows.entrySet()) {
+			expectedTotals.merge(currencyFlows.getKey(), currencyFlows.getValue().drain(cut), BigDecimal::add);
+		}
+		return new TreeMap<>(expectedTotals);
+	}
+
+	/**
+	 * This function is used for get the balance of an account at the end of the
+	 * epoch of the cut
+	 *
+	 * @param cut     - epoch of the cut
+	 * @param account - account of the repository
+	 * @return BigDecimal - balance at the cut
+	 */
+	BigDecimal balanceAt(long cut, Account account) {
+		Cell cell = cells.get(account.getAccountId());
+		if (cell != null && cell.epoch > cut) {
+			return cell.saved;
+		}
+		BigDecimal balance = account.getBalance();
+		// The epoch is written before the balance is updated, if it is still old
+		// the balance read is the one of the cut
+		cell = cells.get(account.getAccountId());
+		if (cell != null && cell.epoch > cut) {
+			return cell.saved;
+		}
+		return balance;
+	}
+
+	/**
+	 * This function is used for clear the snapshots when the accounts are cleared
+	 */
+	synchronized void clear() {
+		generation++;
+		expectedTotals.clear();
+		cells.clear();
+		flows.clear();
+	}
+
+	private CurrencyFlows flowsOf(String currency) {
+		CurrencyFlows currencyFlows = flows.get(currency);
+		return currencyFlows != null ? currencyFlows : flows.computeIfAbsent(currency, CurrencyFlows::new);
+	}
+
+	long getGeneration() {
+		return generation;
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+}
@@ -0,0 +1,60 @@
+package com.dws.challenge.service;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Wall clock shared by the request threads. A single daemon thread reads the
+ * system time every tick and publishes it in a volatile field, a read is then
+ * a plain field load. The time may be late by up to one tick.
+ */
+@Component
+public class CachedClock {
+
+	private final long tickNanos;
+
+	private volatile long millis = System.currentTimeMillis();
+
+	private volatile boolean running = true;
+
+	private Thread ticker;
+
+	public CachedClock(@Value("${clock.tick-ms:1}") long tickMs) {
+		if (tickMs <= 0) {
+			throw new IllegalArgumentException("clock.tick-ms must be positive");
+		}
+		this.tickNanos = tickMs * 1_000_000L;
+	}
+
+	@PostConstruct
+	public void start() {
+		ticker = new Thread(() -> {
+			while (running) {
+				millis = System.currentTimeMillis();
+				LockSupport.parkNanos(tickNanos);
+			}
+		}, "cached-clock");
+		ticker.setDaemon(true);
+		ticker.start();
+	}
+
+	@PreDestroy
+	public void stop() {
+		running = false;
+		LockSupport.unpark(ticker);
+	}
+
+	/**
+	 * This function is used for get the current time
+	 *
+	 * @return long - epoch millis, at most one tick old
+	 */
+	public long millis() {
+		return millis;
+	}
+}
@@ -1,6 +1,7 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferReceipt;
 import com.dws.challenge.exception.AccountIdNotExistException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientBalanceException;
@@ -42,12 +43,23 @@ public interface IAccountsService {
 	 * @param accountFromId - account id need to be withdraw amount
 	 * @param accountToId   - account id need to be deposit amount
 	 * @param amount        - amount need to be withdraw and deposit in account
-	 * @return true / false
+	 * @return TransferReceipt - receipt of the committed transfer
 	 * @throws AccountIdNotExistException
 	 * @throws InsufficientBalanceException
 	 */
 
-	public boolean transfer(String accountFromId, String accountToId, BigDecimal amount)
+	public TransferReceipt transfer(String accountFromId, String accountToId, BigDecimal amount)
 			throws AccountIdNotExistException, InsufficientBalanceException;
 
+	/**
+	 * This function is used for get the version up to which all the balance
+	 * updates are visible. An account read later with a version lower or equal
+	 * has not changed since.
+	 * 
+	 * @param NA
+	 * @return long - version of the accounts
+	 * @throws NA
+	 */
+	public long getVersion();
+
 }
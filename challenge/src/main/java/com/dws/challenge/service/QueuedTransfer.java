@@ -0,0 +1,87 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Transfer submitted in async mode, waiting in the queue or already applied.
+ */
+@Getter
+public class QueuedTransfer {
+
+	public enum Status {
+		PENDING, COMPLETED, FAILED
+	}
+
+	private final String transferId;
+
+	private final String accountFromId;
+
+	private final String accountToId;
+
+	private final BigDecimal amount;
+
+	private final long submittedNanos;
+
+	private volatile Status status = Status.PENDING;
+
+	// Error of a failed transfer, set by the accounts service while applying
+	private volatile String failureMessage;
+
+	private volatile long completedMillis;
+
+	// Run once the outcome is published, null when there is none, guarded by this
+	private List<Runnable> callbacks;
+
+	private boolean finished;
+
+	QueuedTransfer(String transferId, String accountFromId, String accountToId, BigDecimal amount) {
+		this.transferId = transferId;
+		this.accountFromId = accountFromId;
+		this.accountToId = accountToId;
+		this.amount = amount;
+		this.submittedNanos = System.nanoTime();
+	}
+
+	void fail(String message) {
+		this.failureMessage = message;
+	}
+
+	// Publish the outcome, once the group of the transfer is committed
+	void finish() {
+		List<Runnable> finishCallbacks;
+		synchronized (this) {
+			completedMillis = System.currentTimeMillis();
+			status = failureMessage == null ? Status.COMPLETED : Status.FAILED;
+			finished = true;
+			finishCallbacks = callbacks;
+			callbacks = null;
+		}
+		if (finishCallbacks != null) {
+			finishCallbacks.forEach(Runnable::run);
+		}
+	}
+
+	/**
+	 * This function is used for run a callback once the transfer is applied, right
+	 * away when it already is. The callback runs on the thread applying the
+	 * transfer and must not block.
+	 * 
+	 * @param callback - action run with the outcome published
+	 */
+	public void onFinish(Runnable callback) {
+		synchronized (this) {
+			if (!finished) {
+				if (callbacks == null) {
+					callbacks = new ArrayList<>(1);
+				}
+				callbacks.add(callback);
+				return;
+			}
+		}
+		callback.run();
+	}
+}
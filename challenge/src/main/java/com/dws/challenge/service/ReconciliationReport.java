@@ -0,0 +1,22 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Outcome of a reconciliation run, by currency. The total is the sum of the
+ * balances at the consistent cut, expected is the money of the accounts found
+ * at startup and created since plus the money received minus the money sent,
+ * converted or moved between the cluster nodes, up to the cut. Any difference
+ * is reported as drift.
+ */
+public record ReconciliationReport(long epoch, String finishedAt, int accounts,
+		Map<String, CurrencyTotals> currencies, long durationMillis, boolean interrupted) {
+
+	public record CurrencyTotals(BigDecimal total, BigDecimal expected, BigDecimal drift) {
+	}
+
+	public boolean isConserved() {
+		return !interrupted && currencies.values().stream().allMatch(totals -> totals.drift().signum() == 0);
+	}
+}
@@ -1,19 +1,45 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.cluster.ClusterBalanceHistory;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountVersion;
+import com.dws.challenge.domain.BalanceAsOf;
+import com.dws.challenge.domain.AccountsLookup;
 import com.dws.challenge.domain.TransferAmount;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.domain.TransferStatus;
 import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.HistoryDisabledException;
 import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.TransferIdNotExistException;
+import com.dws.challenge.exception.TransferQueueFullException;
+import com.dws.challenge.history.BalanceHistory;
+import com.dws.challenge.replication.ReplicationPrimary;
+import com.dws.challenge.service.AsyncTransferService;
 import com.dws.challenge.service.EmailNotificationService;
 import com.dws.challenge.service.IAccountsService;
+import com.dws.challenge.service.QueuedTransfer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import jakarta.annotation.PostConstruct;
 
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,20 +47,70 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+	private static final String RESPOND_ASYNC = "respond-async";
+
+	private static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+	// Maximum wait of a transfer status long poll
+	private static final long MAX_WAIT_MS = 30000;
+
+	// Version to send as sinceVersion on the next lookup
+	public static final String VERSION_HEADER = "X-Accounts-Version";
+
+	private static final DateTimeFormatter MESSAGE_DATE_FORMAT = DateTimeFormatter
+			.ofPattern("MM-dd-yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
 	@Autowired
 	private IAccountsService accountsService;
 
 	@Autowired
 	private EmailNotificationService emailNotificationService;
 
+	@Autowired
+	private ObjectProvider<ReplicationPrimary> replicationPrimary;
+
+	@Autowired
+	private AsyncTransferService asyncTransferService;
+
+	@Autowired
+	private BalanceHistory balanceHistory;
+
+	@Autowired
+	private ObjectProvider<ClusterBalanceHistory> clusterBalanceHistory;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	// Respond to a transfer with the text message instead of the receipt
+	@Value("${transfers.legacy-message:false}")
+	private boolean legacyMessage;
+
+	private ObjectWriter accountVersionWriter;
+
+	private ObjectWriter transferReceiptWriter;
+
+	// Date of the transfer message, formatted once per second
+	private volatile MessageDate messageDate = new MessageDate(-1, "");
+
+	@PostConstruct
+	public void prepareWriters() {
+		accountVersionWriter = objectMapper.writerFor(AccountVersion.class);
+		transferReceiptWriter = objectMapper.writerFor(TransferReceipt.class);
+	}
+
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
 		log.info("Creating account {}", account);
@@ -42,10 +118,81 @@ public class AccountsController {
 		return new ResponseEntity<>(HttpStatus.CREATED);
 	}
 
+	/**
+	 * This function is used to get an account. The version of the account is
+	 * returned as ETag, a request with the same version in If-None-Match gets 304
+	 * without body.
+	 * 
+	 * @param accountId  - account id
+	 * @param webRequest - request with the If-None-Match header
+	 * @return Account - Account information, null when not modified
+	 * @throws AccountIdNotExistException
+	 */
 	@GetMapping(path = "/{accountId}")
-	public Account getAccount(@PathVariable("accountId") String accountId) {
+	public Account getAccount(@PathVariable("accountId") String accountId, WebRequest webRequest) {
 		log.info("Retrieving account for id {}", accountId);
-		return this.accountsService.getAccount(accountId);
+		Account account = this.accountsService.getAccount(accountId);
+		// Version read before the balance is serialized, the balance is at least as
+		// recent. Accounts of other cluster nodes have no version.
+		long version = account.getVersion();
+		if (version > 0 && webRequest.checkNotModified("\"" + version + "\"")) {
+			return null;
+		}
+		return account;
+	}
+
+	/**
+	 * This function is used to get the balance of an account at a past time, from
+	 * the balance history of this node, or of the node owning the account in
+	 * cluster mode
+	 * 
+	 * @param accountId - account id
+	 * @param asOf      - ISO-8601 instant
+	 * @return BalanceAsOf - balance after the last change at or before asOf
+	 * @throws AccountIdNotExistException when the account has no balance at asOf
+	 * @throws HistoryDisabledException   on a replica, which keeps no history
+	 */
+	@GetMapping(path = "/{accountId}/balance")
+	public BalanceAsOf getBalanceAsOf(@PathVariable("accountId") String accountId,
+			@RequestParam("asOf") Instant asOf) {
+		log.info("Retrieving balance of account {} as of {}", accountId, asOf);
+		ClusterBalanceHistory cluster = clusterBalanceHistory.getIfAvailable();
+		BigDecimal balance = cluster != null ? cluster.balanceAt(accountId, asOf.toEpochMilli())
+				: balanceHistory.balanceAt(accountId, asOf.toEpochMilli());
+		return new BalanceAsOf(accountId, asOf, balance);
+	}
+
+	/**
+	 * This function is used to get many accounts in one streamed response, one
+	 * JSON account with its version per line. Only the accounts changed after the
+	 * given version are returned, unknown account ids are skipped. The version to
+	 * use on the next lookup is returned in the X-Accounts-Version header.
+	 * 
+	 * @param accountsLookup - account ids and version of the previous lookup
+	 * @return StreamingResponseBody - accounts changed since the version
+	 */
+	@PostMapping(path = "/lookup", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> lookupAccounts(@RequestBody @Valid AccountsLookup accountsLookup) {
+		// Read before the accounts, an update missed by this lookup has a higher
+		// version and is returned by the next one
+		long version = accountsService.getVersion();
+		long sinceVersion = accountsLookup.getSinceVersion();
+		StreamingResponseBody body = outputStream -> {
+			for (String accountId : accountsLookup.getAccountIds()) {
+				AccountVersion account;
+				try {
+					account = AccountVersion.of(accountsService.getAccount(accountId));
+				} catch (AccountIdNotExistException e) {
+					continue;
+				}
+				if (account.getVersion() == 0 || account.getVersion() > sinceVersion) {
+					outputStream.write(accountVersionWriter.writeValueAsBytes(account));
+					outputStream.write('\n');
+				}
+			}
+		};
+		return ResponseEntity.ok().header(VERSION_HEADER, Long.toString(version))
+				.contentType(MediaType.APPLICATION_NDJSON).body(body);
 	}
 
 	/**
@@ -53,43 +200,162 @@ public class AccountsController {
 	 * to transfer should always be a positive number. All exception handling with
 	 * spring global exception handler. Validate request by using @Valid
 	 * 
+	 * With the "Prefer: respond-async" header the transfer is queued and 202 is
+	 * returned right away with the transfer id, the outcome is polled on the
+	 * transfer status endpoint. The preference is ignored when async submission is
+	 * disabled (cluster and replica profiles), the transfer is then applied
+	 * synchronously.
+	 * 
+	 * The amount is in the currency of the from account and is converted when the
+	 * to account has another currency. A currency given in the request must be the
+	 * one of the from account.
+	 * 
+	 * The response is the receipt of the transfer with the transfer id and the
+	 * balances left by it. With transfers.legacy-message the text message is
+	 * returned instead.
+	 * 
 	 * @param accountFromId - account id need to be withdraw amount
 	 * @param accountToId   - account id need to be deposit amount
 	 * @param amount        - amount need to be withdraw and deposit in account
-	 * @return true / false
+	 * @param prefer        - preferences, respond-async to queue the transfer
+	 * @return TransferReceipt - receipt of the transfer, the message in legacy mode
 	 * @throws AccountIdNotExistException
 	 * @throws InsufficientBalanceException
+	 * @throws TransferQueueFullException
+	 * @throws CurrencyConversionException
+	 * @throws JsonProcessingException
 	 */
 
 	@PostMapping(path = "/amount/transfer", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Object> transferAmount(@RequestBody @Valid TransferAmount transferAmount) {
+	public ResponseEntity<Object> transferAmount(@RequestBody @Valid TransferAmount transferAmount,
+			@RequestHeader(value = "Prefer", required = false) List<String> prefer) throws JsonProcessingException {
 		log.info("Transfer amount for {} account to {} account", transferAmount.getAccountFromId(),
 				transferAmount.getAccountToId());
 
+		if (transferAmount.getCurrency() != null) {
+			String fromCurrency = accountsService.getAccount(transferAmount.getAccountFromId()).getCurrency();
+			if (!transferAmount.getCurrency().equals(fromCurrency)) {
+				throw new CurrencyConversionException("Amount currency " + transferAmount.getCurrency()
+						+ " is not the currency " + fromCurrency + " of account " + transferAmount.getAccountFromId());
+			}
+		}
+
+		if (asyncTransferService.isEnabled() && prefers(prefer, RESPOND_ASYNC)) {
+			QueuedTransfer transfer = asyncTransferService.submit(transferAmount.getAccountFromId(),
+					transferAmount.getAccountToId(), transferAmount.getAmount());
+			return ResponseEntity.accepted()
+					.location(URI.create("/v1/accounts/amount/transfer/" + transfer.getTransferId()))
+					.header(PREFERENCE_APPLIED, RESPOND_ASYNC).body(TransferStatus.pending(transfer));
+		}
+
 		// Transfer amount form account to account. All exception handling with spring
 		// global exception handler.
-		accountsService.transfer(transferAmount.getAccountFromId(), transferAmount.getAccountToId(),
-				transferAmount.getAmount());
+		TransferReceipt receipt = accountsService.transfer(transferAmount.getAccountFromId(),
+				transferAmount.getAccountToId(), transferAmount.getAmount());
 
-		// Message created after successful transfer amount
-		String pattern = "MM-dd-yyyy HH:mm:ss";
-		SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
-		String date = simpleDateFormat.format(new Date());
-		String message = String.format(
-				"Amount transfer of %1s from %2s to %3s account has been successfully completed on %4s",
-				transferAmount.getAmount(), transferAmount.getAccountFromId(), transferAmount.getAccountToId(), date);
+		// Message created after successful transfer amount. The legacy message and
+		// its date are only built when returned, the notifications otherwise get the
+		// transfer id like the queued transfers.
+		String message = legacyMessage
+				? "Amount transfer of " + transferAmount.getAmount() + " from " + transferAmount.getAccountFromId()
+						+ " to " + transferAmount.getAccountToId() + " account has been successfully completed on "
+						+ formatMessageDate(receipt.getTimestamp())
+				: "Amount transfer of " + transferAmount.getAmount() + " from " + transferAmount.getAccountFromId()
+						+ " to " + transferAmount.getAccountToId()
+						+ " account has been successfully completed, transfer id " + receipt.getTransferId();
 
 		// Notification sent to account holders, with a message containing id of
 		// the other account and amount transferred
-		emailNotificationService.notifyAboutTransfer(this.accountsService.getAccount(transferAmount.getAccountFromId()),
-				message);
+		emailNotificationService.notifyAboutTransfer(accountAfterTransfer(receipt.getAccountFromId(),
+				receipt.getAccountFromBalance(), receipt.getCurrency()), message);
 
 		// Notification sent from account holders, with a message containing id of
 		// the other account and amount transferred
-		emailNotificationService.notifyAboutTransfer(this.accountsService.getAccount(transferAmount.getAccountToId()),
-				message);
+		emailNotificationService.notifyAboutTransfer(accountAfterTransfer(receipt.getAccountToId(),
+				receipt.getAccountToBalance(), receipt.getCreditedCurrency()), message);
+		// Replication token of the transfer, lets the client read its own write on a
+		// replica
+		HttpHeaders headers = new HttpHeaders();
+		replicationPrimary.ifAvailable(primary -> headers.set(ReplicationPrimary.TOKEN_HEADER,
+				Long.toString(primary.getLastSequence())));
 		// Send response back to client
-		return new ResponseEntity<>(message, HttpStatus.OK);
+		if (legacyMessage) {
+			return new ResponseEntity<>(message, headers, HttpStatus.OK);
+		}
+		// Written with the prepared writer, no converter lookup per request
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		return new ResponseEntity<>(transferReceiptWriter.writeValueAsBytes(receipt), headers, HttpStatus.OK);
+	}
+
+	// Account as left by the transfer, read again only when the receipt has no
+	// balance for it
+	private Account accountAfterTransfer(String accountId, BigDecimal balance, String currency) {
+		return balance == null ? accountsService.getAccount(accountId) : new Account(accountId, balance, currency);
+	}
+
+	private String formatMessageDate(long millis) {
+		long second = Math.floorDiv(millis, 1000);
+		MessageDate date = messageDate;
+		if (date.second() != second) {
+			date = new MessageDate(second, MESSAGE_DATE_FORMAT.format(Instant.ofEpochMilli(millis)));
+			messageDate = date;
+		}
+		return date.text();
+	}
+
+	private record MessageDate(long second, String text) {
+	}
+
+	// Prefer header values hold preferences separated by commas, each with
+	// optional parameters after a semicolon and a value after an equals sign
+	private static boolean prefers(List<String> prefer, String preference) {
+		if (prefer == null) {
+			return false;
+		}
+		for (String value : prefer) {
+			for (String token : value.split(",")) {
+				int end = token.length();
+				int semicolon = token.indexOf(';');
+				int equals = token.indexOf('=');
+				if (semicolon >= 0) {
+					end = semicolon;
+				}
+				if (equals >= 0 && equals < end) {
+					end = equals;
+				}
+				if (token.substring(0, end).trim().equalsIgnoreCase(preference)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This function is used to get the status of a transfer submitted in async
+	 * mode. With waitMs the request waits for the outcome up to this time (long
+	 * poll), the request thread is released meanwhile.
+	 * 
+	 * @param transferId - transfer id returned on submission
+	 * @param waitMs     - maximum time to wait for the outcome, optional
+	 * @return TransferStatus - status of the transfer, once applied or waitMs
+	 *         elapsed
+	 * @throws TransferIdNotExistException
+	 */
+	@GetMapping(path = "/amount/transfer/{transferId}")
+	public DeferredResult<TransferStatus> getTransferStatus(@PathVariable("transferId") String transferId,
+			@RequestParam(value = "waitMs", defaultValue = "0") long waitMs) {
+		QueuedTransfer transfer = asyncTransferService.getTransfer(transferId);
+		if (waitMs <= 0) {
+			DeferredResult<TransferStatus> status = new DeferredResult<>();
+			status.setResult(TransferStatus.of(transfer));
+			return status;
+		}
+		// Still pending status when the wait times out
+		DeferredResult<TransferStatus> status = new DeferredResult<>(Math.min(waitMs, MAX_WAIT_MS),
+				() -> TransferStatus.of(transfer));
+		transfer.onFinish(() -> status.setResult(TransferStatus.of(transfer)));
+		return status;
 	}
 
 }
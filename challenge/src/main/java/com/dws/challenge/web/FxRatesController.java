@@ -0,0 +1,61 @@
+package com.dws.challenge.web;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import com.dws.challenge.cluster.ClusterFxRates;
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.fx.FxRates;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/fx/rates")
+@Slf4j
+public class FxRatesController {
+
+	@Autowired
+	private FxRates fxRates;
+
+	@Autowired
+	private ObjectProvider<ClusterFxRates> clusterFxRates;
+
+	/**
+	 * This function is used to get the current FX rates
+	 * 
+	 * @return FxRateTable - base currency, version and rates
+	 */
+	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+	public FxRateTable getRates() {
+		return fxRates.getTable();
+	}
+
+	/**
+	 * This function is used to add or replace FX rates. All the rates of the
+	 * request are published at once, a transfer converts with all the new rates or
+	 * with none of them. In cluster mode the rates are published by the rates node
+	 * and sent to all the nodes.
+	 * 
+	 * @param rates - units of each currency for one unit of the base currency
+	 * @return FxRateTable - published table
+	 * @throws CurrencyConversionException
+	 * @throws NodeUnavailableException
+	 */
+	@PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public FxRateTable updateRates(@RequestBody Map<String, BigDecimal> rates) {
+		log.info("Updating FX rates of {}", rates.keySet());
+		ClusterFxRates cluster = clusterFxRates.getIfAvailable();
+		return cluster != null ? cluster.publish(rates) : fxRates.publish(rates);
+	}
+}
@@ -0,0 +1,47 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.events.TransferEventStreamer;
+import com.dws.challenge.exception.TooManySubscribersException;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/v1/accounts/amount/transfer/events")
+@Slf4j
+public class TransferEventsController {
+
+	@Autowired
+	private TransferEventStreamer transferEventStreamer;
+
+	@Value("${events.emitter-timeout-ms:1800000}")
+	private long emitterTimeoutMs;
+
+	/**
+	 * This function is used to stream the committed transfers as Server-Sent
+	 * Events. A reconnecting client sends the Last-Event-ID header to resume after
+	 * the last event it received.
+	 * 
+	 * @param accountId   - only transfers from or to this account, optional
+	 * @param lastEventId - sequence of the last event received, optional
+	 * @return SseEmitter - stream of transfer events
+	 * @throws TooManySubscribersException
+	 */
+	@GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamTransfers(@RequestParam(value = "accountId", required = false) String accountId,
+			@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+		log.info("Subscribing to transfer events of account {} after event {}", accountId, lastEventId);
+		SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+		transferEventStreamer.subscribe(emitter, accountId, lastEventId);
+		return emitter;
+	}
+}
@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS account (
+	account_id VARCHAR(255) PRIMARY KEY,
+	balance DECIMAL(38, 4) NOT NULL,
+	currency CHAR(3) DEFAULT 'EUR' NOT NULL,
+	version BIGINT DEFAULT 0 NOT NULL
+);
+
+-- Databases created before the versions and currencies
+ALTER TABLE account ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE account ADD COLUMN IF NOT EXISTS currency CHAR(3) DEFAULT 'EUR' NOT NULL;
+
+-- Databases created with two decimal places, the balance keeps the minor unit
+-- of any currency
+ALTER TABLE account ALTER COLUMN balance SET DATA TYPE DECIMAL(38, 4);
+
+CREATE SEQUENCE IF NOT EXISTS account_version START WITH 1;
+
+CREATE INDEX IF NOT EXISTS account_version_idx ON account (version);
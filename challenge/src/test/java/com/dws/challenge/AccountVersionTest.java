@@ -0,0 +1,104 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.web.AccountsController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest
+@WebAppConfiguration
+class AccountVersionTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+		// Reset the existing accounts before each test.
+		accountsService.clearAccounts();
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("100")));
+		accountsService.createAccount(new Account("Id-3", new BigDecimal("100")));
+	}
+
+	/**
+	 * This function is used for test the account is not returned again while its
+	 * version is unchanged, and is returned once its balance is updated
+	 */
+	@Test
+	void getAccountNotModifiedTest() throws Exception {
+		String etag = this.mockMvc.perform(get("/v1/accounts/Id-1")).andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.ETAG)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		this.mockMvc.perform(get("/v1/accounts/Id-1").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified()).andExpect(content().string(""));
+
+		accountsService.transfer("Id-1", "Id-2", BigDecimal.TEN);
+
+		String newEtag = this.mockMvc.perform(get("/v1/accounts/Id-1").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk()).andExpect(content().string("{\"accountId\":\"Id-1\",\"balance\":90,\"currency\":\"EUR\"}"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertThat(newEtag).isNotEqualTo(etag);
+	}
+
+	/**
+	 * This function is used for test the lookup returns only the accounts changed
+	 * since the version of the previous lookup
+	 */
+	@Test
+	void lookupChangedSinceTest() throws Exception {
+		String lookup = "{\"accountIds\":[\"Id-1\",\"Id-2\",\"Id-3\",\"Id-missing\"],\"sinceVersion\":%d}";
+
+		MvcResult first = lookup(String.format(lookup, 0));
+		String body = first.getResponse().getContentAsString();
+		assertThat(body.lines()).hasSize(3);
+		assertThat(body).contains("\"accountId\":\"Id-1\",\"balance\":100,\"currency\":\"EUR\",\"version\":");
+		long version = Long.parseLong(first.getResponse().getHeader(AccountsController.VERSION_HEADER));
+
+		accountsService.transfer("Id-2", "Id-3", BigDecimal.ONE);
+
+		MvcResult second = lookup(String.format(lookup, version));
+		body = second.getResponse().getContentAsString();
+		assertThat(body.lines()).hasSize(2);
+		assertThat(body).contains("\"accountId\":\"Id-2\",\"balance\":99")
+				.contains("\"accountId\":\"Id-3\",\"balance\":101").doesNotContain("Id-1");
+
+		version = Long.parseLong(second.getResponse().getHeader(AccountsController.VERSION_HEADER));
+		assertThat(lookup(String.format(lookup, version)).getResponse().getContentAsString()).isEmpty();
+	}
+
+	private MvcResult lookup(String body) throws Exception {
+		MvcResult result = this.mockMvc
+				.perform(post("/v1/accounts/lookup").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(request().asyncStarted()).andReturn();
+		return this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn();
+	}
+}
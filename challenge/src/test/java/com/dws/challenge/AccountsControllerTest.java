@@ -100,7 +100,7 @@ class AccountsControllerTest {
 		Account account = new Account(uniqueAccountId, new BigDecimal("123.45"));
 		this.accountsService.createAccount(account);
 		this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId)).andExpect(status().isOk())
-				.andExpect(content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+				.andExpect(content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
 	}
 
 }
@@ -0,0 +1,222 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryJdbc;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceChangeListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:accounts-test;DB_CLOSE_DELAY=-1",
+		"history.directory=" })
+@ActiveProfiles("jdbc")
+class AccountsRepositoryJdbcTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	@Autowired
+	private CommittedBalanceListener committedBalanceListener;
+
+	@BeforeEach
+	void clearAccounts() {
+		committedBalanceListener.mismatches.clear();
+		accountsService.clearAccounts();
+		accountsService.createAccount(new Account("1001", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("1002", new BigDecimal(1000)));
+	}
+
+	@Test
+	void jdbcRepositoryIsSelectedByProfile() {
+		assertThat(accountsRepository).isInstanceOf(AccountsRepositoryJdbc.class);
+	}
+
+	/**
+	 * This function is used for test cached balances are refreshed after the
+	 * transfer commits
+	 */
+	@Test
+	void transferAmountTest() {
+		// Load both accounts in the cache
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("1002").getBalance()).isEqualByComparingTo("1000");
+
+		accountsService.transfer("1001", "1002", BigDecimal.TEN);
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("990");
+		assertThat(accountsService.getAccount("1002").getBalance()).isEqualByComparingTo("1010");
+	}
+
+	/**
+	 * This function is used for test the listeners are notified of the balances
+	 * once committed, single and grouped transfers
+	 */
+	@Test
+	void listenersSeeCommittedBalancesTest() {
+		accountsService.transfer("1001", "1002", BigDecimal.TEN);
+		assertThrows(AccountIdNotExistException.class,
+				() -> accountsService.transfer("1001", "1003", BigDecimal.TEN));
+
+		assertThat(committedBalanceListener.mismatches).isEmpty();
+	}
+
+	/**
+	 * This function is used for test conditional withdraw does not debit when
+	 * balance is insufficient
+	 */
+	@Test
+	void transferInsufficientBalanceTest() {
+		assertThrows(InsufficientBalanceException.class,
+				() -> accountsService.transfer("1001", "1002", new BigDecimal(2000)));
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("1002").getBalance()).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test withdraw is rolled back when deposit account
+	 * does not exist
+	 */
+	@Test
+	void transferAmountNonExistingAccountTest() {
+		assertThrows(AccountIdNotExistException.class,
+				() -> accountsService.transfer("1001", "1003", BigDecimal.TEN));
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test amounts keep the minor unit of their
+	 * currency, an amount with more decimal places is rejected and not rounded
+	 */
+	@Test
+	void transferAmountScaleTest() {
+		accountsService.createAccount(new Account("1004", new BigDecimal("1000"), "KWD"));
+		accountsService.createAccount(new Account("1005", new BigDecimal("0.125"), "KWD"));
+		assertThat(accountsService.getAccount("1005").getBalance()).isEqualTo(new BigDecimal("0.125"));
+
+		assertThrows(InvalidAmountException.class,
+				() -> accountsService.transfer("1001", "1002", new BigDecimal("1.005")));
+		accountsService.transfer("1004", "1005", new BigDecimal("0.001"));
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("1005").getBalance()).isEqualTo(new BigDecimal("0.126"));
+	}
+
+	/**
+	 * This function is used for test the version returned while transfers are
+	 * committing is below every transfer not visible yet, a lookup since this
+	 * version does not miss any of them
+	 */
+	@Test
+	void versionOfConcurrentTransfersTest() throws Exception {
+		int transfers = 500;
+		for (int i = 0; i < transfers; i++) {
+			accountsService.createAccount(new Account("from-" + i, BigDecimal.TEN));
+			accountsService.createAccount(new Account("to-" + i, BigDecimal.ZERO));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < transfers; i++) {
+			String accountId = Integer.toString(i);
+			futures.add(executor.submit(() -> accountsService.transfer("from-" + accountId, "to-" + accountId,
+					BigDecimal.ONE)));
+		}
+
+		// Highest version returned while the from account was not debited yet
+		Map<String, Long> notDebitedAtVersion = new HashMap<>();
+		boolean transferring = true;
+		while (transferring) {
+			transferring = futures.stream().anyMatch(future -> !future.isDone());
+			long version = accountsService.getVersion();
+			for (Account account : accountsRepository.getAccounts()) {
+				if (account.getAccountId().startsWith("from-") && account.getBalance().compareTo(BigDecimal.TEN) == 0) {
+					notDebitedAtVersion.put(account.getAccountId(), version);
+				}
+			}
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		// A transfer missed by a lookup has a higher version than the one returned
+		for (Account account : accountsRepository.getAccounts()) {
+			Long version = notDebitedAtVersion.get(account.getAccountId());
+			if (version != null) {
+				assertThat(account.getVersion()).isGreaterThan(version);
+			}
+		}
+	}
+
+	@TestConfiguration
+	static class CommittedBalanceConfig {
+
+		@Bean
+		CommittedBalanceListener committedBalanceListener(DataSource dataSource) {
+			return new CommittedBalanceListener(dataSource);
+		}
+	}
+
+	// Reads the notified balance on a connection of its own, which sees the
+	// committed values only
+	static class CommittedBalanceListener implements BalanceChangeListener {
+
+		private final DataSource dataSource;
+
+		private final List<String> mismatches = new CopyOnWriteArrayList<>();
+
+		CommittedBalanceListener(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+
+		@Override
+		public void onBalanceChange(String accountId, String currency, BigDecimal balance, long time,
+				long epoch) {
+			try (Connection connection = dataSource.getConnection();
+					PreparedStatement statement = connection
+							.prepareStatement("SELECT balance FROM account WHERE account_id = ?")) {
+				statement.setString(1, accountId);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					if (!resultSet.next() || resultSet.getBigDecimal(1).compareTo(balance) != 0) {
+						mismatches.add(accountId + " notified " + balance);
+					}
+				}
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
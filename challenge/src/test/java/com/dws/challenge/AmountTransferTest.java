@@ -3,6 +3,7 @@ package com.dws.challenge;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -53,7 +54,11 @@ class AmountTransferTest {
 		this.mockMvc
 				.perform(post("/v1/accounts/amount/transfer").contentType(MediaType.APPLICATION_JSON)
 						.content("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 10}"))
-				.andExpect(status().isOk());
+				.andExpect(status().isOk()).andExpect(jsonPath("$.transferId").isNotEmpty())
+				.andExpect(jsonPath("$.accountFromId").value("1001")).andExpect(jsonPath("$.accountToId").value("1002"))
+				.andExpect(jsonPath("$.accountFromBalance").value(990))
+				.andExpect(jsonPath("$.accountToBalance").value(1010)).andExpect(jsonPath("$.currency").value("EUR"))
+				.andExpect(jsonPath("$.timestamp").isNumber());
 
 		Account fromAccount = accountsService.getAccount("1001");
 		Account toAccount = accountsService.getAccount("1002");
@@ -208,4 +213,26 @@ class AmountTransferTest {
 		assertThat(toAccount.getBalance()).isEqualByComparingTo("1000");
 	}
 
+	/**
+	 * This function is used for test amount with more decimal places than the
+	 * currency minor unit
+	 */
+	@Test
+	void transferAmountScaleTest() throws Exception {
+
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1001\",\"balance\":1000}")).andExpect(status().isCreated());
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1002\",\"balance\":1000.005}")).andExpect(status().isBadRequest());
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1002\",\"balance\":1000.500}")).andExpect(status().isCreated());
+
+		this.mockMvc
+				.perform(post("/v1/accounts/amount/transfer").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 10.001}"))
+				.andExpect(status().isBadRequest());
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("1000");
+		assertThat(accountsService.getAccount("1002").getBalance()).isEqualByComparingTo("1000.5");
+	}
 }
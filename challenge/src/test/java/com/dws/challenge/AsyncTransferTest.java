@@ -0,0 +1,150 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest
+@WebAppConfiguration
+class AsyncTransferTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@BeforeEach
+	void prepareMockMvc() throws Exception {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+		// Reset the existing accounts before each test.
+		accountsService.clearAccounts();
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1001\",\"balance\":1000}")).andExpect(status().isCreated());
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1002\",\"balance\":1000}")).andExpect(status().isCreated());
+	}
+
+	private String submit(String body) throws Exception {
+		return submit(body, "respond-async");
+	}
+
+	private String submit(String body, String prefer) throws Exception {
+		String response = this.mockMvc
+				.perform(post("/v1/accounts/amount/transfer").header("Prefer", prefer)
+						.contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isAccepted()).andExpect(header().exists("Location"))
+				.andExpect(header().string("Preference-Applied", "respond-async"))
+				.andExpect(jsonPath("$.status").value("PENDING")).andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(response).get("transferId").asText();
+	}
+
+	// Long poll of the transfer status, answered once the transfer is applied
+	private MvcResult awaitTransfer(String transferId) throws Exception {
+		return this.mockMvc.perform(get("/v1/accounts/amount/transfer/" + transferId).param("waitMs", "5000"))
+				.andExpect(request().asyncStarted()).andReturn();
+	}
+
+	/**
+	 * This function is used for test async transfer is applied and its status is
+	 * reported by the long poll
+	 */
+	@Test
+	void asyncTransferAmountTest() throws Exception {
+		String transferId = submit("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 10}");
+
+		this.mockMvc.perform(asyncDispatch(awaitTransfer(transferId)))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.status").value("COMPLETED"));
+
+		Account fromAccount = accountsService.getAccount("1001");
+		Account toAccount = accountsService.getAccount("1002");
+		assertThat(fromAccount.getBalance()).isEqualByComparingTo("990");
+		assertThat(toAccount.getBalance()).isEqualByComparingTo("1010");
+		assertThat(meterRegistry.find("transfers.async.queue.depth").gauge()).isNotNull();
+		assertThat(meterRegistry.find("transfers.async.latency").tag("status", "completed").timer().count())
+				.isPositive();
+	}
+
+	/**
+	 * This function is used for test failed async transfer reports its error and
+	 * does not stop the other transfers of its group
+	 */
+	@Test
+	void asyncTransferInsufficientBalanceTest() throws Exception {
+		String failedId = submit("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 2000}");
+		String transferId = submit("{\"accountFromId\": \"1002\",\"accountToId\": \"1001\",\"amount\": 10}");
+
+		this.mockMvc.perform(asyncDispatch(awaitTransfer(failedId)))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.status").value("FAILED"))
+				.andExpect(jsonPath("$.message").value("Account id 1001 has insufficient balance!"));
+		this.mockMvc.perform(asyncDispatch(awaitTransfer(transferId)))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.status").value("COMPLETED"));
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("1010");
+		assertThat(accountsService.getAccount("1002").getBalance()).isEqualByComparingTo("990");
+	}
+
+	/**
+	 * This function is used for test respond-async is found among other
+	 * preferences of the Prefer header
+	 */
+	@Test
+	void asyncTransferPreferencesTest() throws Exception {
+		String transferId = submit("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 10}",
+				"wait=10, Respond-Async");
+
+		this.mockMvc.perform(asyncDispatch(awaitTransfer(transferId))).andExpect(status().isOk())
+				.andExpect(jsonPath("$.status").value("COMPLETED"));
+	}
+
+	/**
+	 * This function is used for test an unknown preference is ignored and the
+	 * transfer is applied synchronously
+	 */
+	@Test
+	void unknownPreferenceTest() throws Exception {
+		this.mockMvc
+				.perform(post("/v1/accounts/amount/transfer").header("Prefer", "respond-asynchronously")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 10}"))
+				.andExpect(status().isOk());
+
+		assertThat(accountsService.getAccount("1001").getBalance()).isEqualByComparingTo("990");
+	}
+
+	/**
+	 * This function is used for test status of unknown transfer id
+	 */
+	@Test
+	void unknownTransferIdTest() throws Exception {
+		this.mockMvc.perform(get("/v1/accounts/amount/transfer/unknown")).andExpect(status().isNotFound());
+	}
+}
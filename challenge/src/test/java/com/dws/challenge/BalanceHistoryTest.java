@@ -0,0 +1,207 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferReceipt;
+import com.dws.challenge.exception.AccountIdNotExistException;
+import com.dws.challenge.history.BalanceHistory;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest(properties = { "history.heap-retention-ms=0", "history.compaction-interval-ms=0",
+		"history.max-segments=2" })
+@WebAppConfiguration
+class BalanceHistoryTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private BalanceHistory balanceHistory;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+		// Reset the existing accounts before each test.
+		accountsService.clearAccounts();
+	}
+
+	/**
+	 * This function is used for test the balance at a past time is found on the
+	 * heap, in the segments and in the merged segments
+	 */
+	@Test
+	void balanceAsOfTest() throws Exception {
+		long beforeCreate = tick();
+		accountsService.createAccount(new Account("h-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("h-2", new BigDecimal("1000")));
+
+		// Enough transfers for several blocks of the sparse index
+		List<Long> times = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			for (int j = 0; j < 50; j++) {
+				accountsService.transfer("h-1", "h-2", BigDecimal.ONE);
+			}
+			times.add(tick());
+			// Every round but the last moved to a segment, segments merged above two
+			if (i < 4) {
+				balanceHistory.compact();
+			}
+		}
+
+		for (int i = 0; i < times.size(); i++) {
+			assertThat(balanceHistory.balanceAt("h-1", times.get(i)))
+					.isEqualByComparingTo(new BigDecimal(1000 - 50 * (i + 1)));
+			assertThat(balanceHistory.balanceAt("h-2", times.get(i)))
+					.isEqualByComparingTo(new BigDecimal(1000 + 50 * (i + 1)));
+		}
+		assertThrows(AccountIdNotExistException.class, () -> balanceHistory.balanceAt("h-1", beforeCreate));
+
+		this.mockMvc.perform(get("/v1/accounts/h-1/balance").param("asOf",
+				Instant.ofEpochMilli(times.get(1)).toString())).andExpect(status().isOk())
+				.andExpect(jsonPath("$.accountId").value("h-1")).andExpect(jsonPath("$.balance").value(900));
+		this.mockMvc.perform(get("/v1/accounts/h-1/balance").param("asOf",
+				Instant.ofEpochMilli(beforeCreate).toString())).andExpect(status().isNotFound());
+	}
+
+	/**
+	 * This function is used for test the history is cleared with the accounts
+	 */
+	@Test
+	void clearAccountsTest() throws Exception {
+		accountsService.createAccount(new Account("h-1", new BigDecimal("1000")));
+		long created = tick();
+		balanceHistory.compact();
+
+		accountsService.clearAccounts();
+
+		assertThrows(AccountIdNotExistException.class, () -> balanceHistory.balanceAt("h-1", created));
+	}
+
+	/**
+	 * This function is used for test the changes older than the retention are
+	 * dropped, but the last one of each account is kept
+	 */
+	@Test
+	void retentionTest() throws Exception {
+		accountsService.createAccount(new Account("h-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("h-2", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("h-3", new BigDecimal("1000")));
+		long beforeTransfers = tick();
+		for (int i = 0; i < 3; i++) {
+			accountsService.transfer("h-1", "h-2", BigDecimal.ONE);
+		}
+		balanceHistory.compact();
+		long cutoff = tick();
+		// Changes after the cutoff are well after the one of the compaction below
+		Thread.sleep(200);
+		for (int i = 0; i < 2; i++) {
+			accountsService.transfer("h-1", "h-2", BigDecimal.ONE);
+		}
+		long afterTransfers = tick();
+		balanceHistory.compact();
+
+		Object retentionMs = ReflectionTestUtils.getField(balanceHistory, "retentionMs");
+		try {
+			ReflectionTestUtils.setField(balanceHistory, "retentionMs", System.currentTimeMillis() - cutoff);
+			balanceHistory.compact();
+		} finally {
+			ReflectionTestUtils.setField(balanceHistory, "retentionMs", retentionMs);
+		}
+
+		assertThrows(AccountIdNotExistException.class, () -> balanceHistory.balanceAt("h-1", beforeTransfers));
+		assertThat(balanceHistory.balanceAt("h-1", cutoff)).isEqualByComparingTo("997");
+		assertThat(balanceHistory.balanceAt("h-1", afterTransfers)).isEqualByComparingTo("995");
+		assertThat(balanceHistory.balanceAt("h-2", cutoff)).isEqualByComparingTo("1003");
+		// No change after the cutoff, the last one is kept
+		assertThat(balanceHistory.balanceAt("h-3", afterTransfers)).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test the history kept in a directory, changes on
+	 * the heap included, is loaded again on restart
+	 */
+	@Test
+	void reloadTest(@TempDir Path directory) throws Exception {
+		String[] args = { "--server.port=0", "--history.directory=" + directory,
+				"--history.heap-retention-ms=0", "--history.compaction-interval-ms=0" };
+		long compacted;
+		long onHeap;
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+				.run(args)) {
+			AccountsService service = context.getBean(AccountsService.class);
+			service.createAccount(new Account("h-1", new BigDecimal("1000")));
+			service.createAccount(new Account("h-2", new BigDecimal("1000")));
+			service.transfer("h-1", "h-2", BigDecimal.TEN);
+			compacted = tick();
+			context.getBean(BalanceHistory.class).compact();
+			// Written to a segment on shutdown only
+			service.transfer("h-1", "h-2", BigDecimal.TEN);
+			onHeap = tick();
+		}
+
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+				.run(args)) {
+			BalanceHistory history = context.getBean(BalanceHistory.class);
+			assertThat(history.balanceAt("h-1", compacted)).isEqualByComparingTo("990");
+			assertThat(history.balanceAt("h-1", onHeap)).isEqualByComparingTo("980");
+			assertThat(history.balanceAt("h-2", onHeap)).isEqualByComparingTo("1020");
+		}
+	}
+
+	/**
+	 * This function is used for test a transfer is recorded at the timestamp of
+	 * its receipt
+	 */
+	@Test
+	void receiptTimestampTest() throws Exception {
+		accountsService.createAccount(new Account("h-1", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("h-2", new BigDecimal("1000")));
+		tick();
+
+		TransferReceipt receipt = accountsService.transfer("h-1", "h-2", BigDecimal.TEN);
+
+		assertThat(balanceHistory.balanceAt("h-1", receipt.getTimestamp()))
+				.isEqualByComparingTo(receipt.getAccountFromBalance());
+		assertThat(balanceHistory.balanceAt("h-2", receipt.getTimestamp()))
+				.isEqualByComparingTo(receipt.getAccountToBalance());
+		assertThat(balanceHistory.balanceAt("h-1", receipt.getTimestamp() - 1)).isEqualByComparingTo("1000");
+	}
+
+	// Current time, the changes before and after are in different milliseconds.
+	// Changes are timed by the cached clock, up to a tick late.
+	private static long tick() throws InterruptedException {
+		Thread.sleep(2);
+		long time = System.currentTimeMillis();
+		Thread.sleep(20);
+		return time;
+	}
+}
@@ -0,0 +1,207 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceReconciler;
+import com.dws.challenge.service.ReconciliationReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+
+@SpringBootTest(properties = { "reconciler.chunk-size=16", "reconciler.cpu-budget=0.5" })
+class BalanceReconcilerTest {
+
+	private static final int ACCOUNTS = 200;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private AccountsRepository accountsRepository;
+
+	@Autowired
+	private BalanceReconciler balanceReconciler;
+
+	@BeforeEach
+	void prepareAccounts() {
+		// Reset the existing accounts before each test.
+		accountsService.clearAccounts();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			accountsService.createAccount(new Account("acc-" + i, new BigDecimal("100.00")));
+		}
+	}
+
+	/**
+	 * This function is used for test the balances of the accounts are conserved
+	 */
+	@Test
+	void reconcileConservedTest() {
+		accountsService.transfer("acc-0", "acc-1", new BigDecimal("12.34"));
+
+		ReconciliationReport report = balanceReconciler.reconcile();
+
+		assertThat(report.isConserved()).isTrue();
+		assertThat(report.accounts()).isEqualTo(ACCOUNTS);
+		assertThat(report.currencies().get("EUR").total()).isEqualByComparingTo(new BigDecimal(100 * ACCOUNTS));
+		assertThat(report.currencies().get("EUR").expected()).isEqualByComparingTo(new BigDecimal(100 * ACCOUNTS));
+	}
+
+	/**
+	 * This function is used for test the money converted by a transfer between two
+	 * currencies is expected in the currency of each account
+	 */
+	@Test
+	void reconcileConvertedTest() {
+		accountsService.createAccount(new Account("usd-0", new BigDecimal("100.00"), "USD"));
+		BigDecimal credit = accountsService.convertTo("usd-0", new BigDecimal("12.34"), "EUR");
+		accountsService.transfer("acc-0", "usd-0", new BigDecimal("12.34"));
+
+		ReconciliationReport report = balanceReconciler.reconcile();
+
+		assertThat(report.isConserved()).isTrue();
+		assertThat(report.currencies().get("EUR").total())
+				.isEqualByComparingTo(new BigDecimal(100 * ACCOUNTS).subtract(new BigDecimal("12.34")));
+		assertThat(report.currencies().get("USD").total())
+				.isEqualByComparingTo(new BigDecimal("100.00").add(credit));
+	}
+
+	/**
+	 * This function is used for test the cut is consistent while transfers, failed
+	 * transfers reverted by the compensating deposit and new accounts go on
+	 */
+	@Test
+	void reconcileWhileTransferringTest() throws Exception {
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 3; t++) {
+			futures.add(executor.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					String from = "acc-" + random.nextInt(ACCOUNTS);
+					// One transfer in ten to a missing account, withdrawn then refunded
+					String to = random.nextInt(10) == 0 ? "missing" : "acc-" + random.nextInt(ACCOUNTS);
+					try {
+						accountsService.transfer(from, to, BigDecimal.ONE);
+					} catch (RuntimeException e) {
+						// Insufficient balance, same account or missing account
+					}
+				}
+			}));
+		}
+		futures.add(executor.submit(() -> {
+			int created = 0;
+			while (running.get()) {
+				accountsService.createAccount(new Account("new-" + created++, BigDecimal.TEN));
+			}
+		}));
+
+		List<ReconciliationReport> reports = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			reports.add(balanceReconciler.reconcile());
+		}
+		running.set(false);
+		for (Future<?> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+		reports.add(balanceReconciler.reconcile());
+
+		assertThat(reports).allSatisfy(report -> assertThat(report.isConserved()).isTrue());
+		assertThat(reports.get(reports.size() - 1).epoch()).isGreaterThan(reports.get(0).epoch());
+	}
+
+	/**
+	 * This function is used for test the accounts stored by a previous run are
+	 * expected with the database repository, and the cut stays consistent while
+	 * transfers are committed and failed deposits rolled back
+	 */
+	@Test
+	void reconcileJdbcTest(@TempDir Path directory) throws Exception {
+		String[] args = { "--server.port=0", "--spring.profiles.active=jdbc",
+				"--spring.datasource.url=jdbc:h2:file:" + directory.resolve("accounts"), "--history.directory=" };
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+				.run(args)) {
+			AccountsService service = context.getBean(AccountsService.class);
+			for (int i = 0; i < 10; i++) {
+				service.createAccount(new Account("j-" + i, new BigDecimal("100.00")));
+			}
+			service.transfer("j-0", "j-1", BigDecimal.TEN);
+		}
+
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+				.run(args)) {
+			AccountsService service = context.getBean(AccountsService.class);
+			BalanceReconciler reconciler = context.getBean(BalanceReconciler.class);
+			// A deposit above the precision of the balance column fails after the
+			// withdraw
+			BigDecimal full = new BigDecimal("9".repeat(34));
+			service.createAccount(new Account("j-full", full));
+
+			AtomicBoolean running = new AtomicBoolean(true);
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 2; t++) {
+				futures.add(executor.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					while (running.get()) {
+						String to = random.nextInt(10) == 0 ? "j-full" : "j-" + random.nextInt(10);
+						try {
+							service.transfer("j-" + random.nextInt(10), to, BigDecimal.ONE);
+						} catch (RuntimeException e) {
+							// Insufficient balance, same account or failed deposit
+						}
+					}
+				}));
+			}
+			List<ReconciliationReport> reports = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				reports.add(reconciler.reconcile());
+			}
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+			executor.shutdown();
+			reports.add(reconciler.reconcile());
+
+			assertThat(reports).allSatisfy(report -> assertThat(report.isConserved()).isTrue());
+			assertThat(reports.get(reports.size() - 1).currencies().get("EUR").expected())
+					.isEqualByComparingTo(new BigDecimal("1000.00").add(full));
+			assertThat(service.getAccount("j-full").getBalance()).isEqualByComparingTo(full);
+		}
+	}
+
+	/**
+	 * This function is used for test a balance changed outside of the transfers is
+	 * reported as drift
+	 */
+	@Test
+	void reconcileDriftTest() {
+		accountsRepository.updateBalance("acc-0", new BigDecimal("99.50"));
+
+		ReconciliationReport report = balanceReconciler.reconcile();
+
+		assertThat(report.isConserved()).isFalse();
+		assertThat(report.currencies().get("EUR").drift()).isEqualByComparingTo(new BigDecimal("-0.50"));
+		assertThat(balanceReconciler.getLastReport()).isEqualTo(report);
+	}
+}
@@ -0,0 +1,80 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Measures the transfer throughput of the cluster while nodes are added. Run
+ * with the benchmark task, results are published as report entries of the
+ * test.
+ */
+@Tag("benchmark")
+class ClusterThroughputScalingTest {
+
+	private static final int ACCOUNTS = 1000;
+
+	private static final long INITIAL_BALANCE = 1_000_000;
+
+	private static final int CLIENTS = 16;
+
+	private static final long DURATION_MS = 5000;
+
+	@ParameterizedTest
+	@ValueSource(ints = { 1, 2, 4 })
+	void transferThroughput(int nodes, TestReporter testReporter) throws Exception {
+		try (LocalCluster cluster = new LocalCluster(nodes)) {
+			List<String> clusterNodes = cluster.getNodes();
+			for (int i = 0; i < ACCOUNTS; i++) {
+				cluster.createAccount(clusterNodes.get(i % nodes), "acc-" + i, INITIAL_BALANCE);
+			}
+
+			ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+			List<Future<Long>> results = new ArrayList<>();
+			for (int c = 0; c < CLIENTS; c++) {
+				results.add(clients.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					long completed = 0;
+					while (System.nanoTime() < deadline) {
+						int from = random.nextInt(ACCOUNTS);
+						int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+						String node = clusterNodes.get(random.nextInt(nodes));
+						if (cluster.transfer(node, "acc-" + from, "acc-" + to, 1) == 200) {
+							completed++;
+						}
+					}
+					return completed;
+				}));
+			}
+			long completed = 0;
+			for (Future<Long> result : results) {
+				completed += result.get();
+			}
+			clients.shutdown();
+
+			testReporter.publishEntry("nodes", Integer.toString(nodes));
+			testReporter.publishEntry("transfers", Long.toString(completed));
+			testReporter.publishEntry("throughputPerSecond", String.format("%.1f", completed * 1000.0 / DURATION_MS));
+
+			// Money must be conserved whatever the number of partitions
+			BigDecimal total = BigDecimal.ZERO;
+			for (int i = 0; i < ACCOUNTS; i++) {
+				total = total.add(cluster.balance(clusterNodes.get(0), "acc-" + i));
+			}
+			assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(ACCOUNTS * INITIAL_BALANCE));
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.dws.challenge.events.TransferEvent;
+import com.dws.challenge.events.TransferEventRingBuffer;
+import com.dws.challenge.service.BalanceReconciler;
+import com.dws.challenge.service.ReconciliationReport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ClusterTransferTest {
+
+	private static LocalCluster cluster;
+
+	@BeforeAll
+	static void startCluster() throws Exception {
+		// Transactions left prepared are resolved quickly
+		cluster = new LocalCluster(3, "--cluster.transaction-timeout-ms=500", "--cluster.recovery-interval-ms=100");
+	}
+
+	@AfterAll
+	static void stopCluster() {
+		cluster.close();
+	}
+
+	/**
+	 * This function is used for find an account id owned by another node than
+	 * the given account id
+	 */
+	private String accountOnOtherNode(String prefix, String accountId) {
+		for (int i = 0;; i++) {
+			String candidate = prefix + i;
+			if (!cluster.ownerOf(candidate).equals(cluster.ownerOf(accountId))) {
+				return candidate;
+			}
+		}
+	}
+
+	/**
+	 * This function is used for test transfer between two partitions requested
+	 * on a node owning none of the accounts
+	 */
+	@Test
+	void transferBetweenPartitionsTest() throws Exception {
+		String fromId = "from-1";
+		String toId = accountOnOtherNode("to-1-", fromId);
+		String coordinator = cluster.getNodes().stream()
+				.filter(node -> !node.equals(cluster.ownerOf(fromId)) && !node.equals(cluster.ownerOf(toId)))
+				.findFirst().get();
+
+		assertThat(cluster.createAccount(coordinator, fromId, 1000)).isEqualTo(201);
+		assertThat(cluster.createAccount(coordinator, toId, 1000)).isEqualTo(201);
+
+		assertThat(cluster.transfer(coordinator, fromId, toId, 10)).isEqualTo(200);
+
+		assertThat(cluster.balance(cluster.ownerOf(fromId), fromId)).isEqualByComparingTo("990");
+		assertThat(cluster.balance(coordinator, toId)).isEqualByComparingTo("1010");
+	}
+
+	/**
+	 * This function is used for test reservation is not taken when balance is
+	 * insufficient
+	 */
+	@Test
+	void transferBetweenPartitionsInsufficientBalanceTest() throws Exception {
+		String fromId = "from-2";
+		String toId = accountOnOtherNode("to-2-", fromId);
+		String node = cluster.getNodes().get(0);
+
+		cluster.createAccount(node, fromId, 1000);
+		cluster.createAccount(node, toId, 1000);
+
+		assertThat(cluster.transfer(node, fromId, toId, 2000)).isEqualTo(400);
+
+		assertThat(cluster.balance(node, fromId)).isEqualByComparingTo("1000");
+		assertThat(cluster.balance(node, toId)).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test reservation is aborted and refunded when to
+	 * account is not existing
+	 */
+	@Test
+	void transferBetweenPartitionsNonExistingAccountTest() throws Exception {
+		String fromId = "from-3";
+		String toId = accountOnOtherNode("to-3-", fromId);
+		String node = cluster.getNodes().get(1);
+
+		cluster.createAccount(node, fromId, 1000);
+
+		assertThat(cluster.transfer(node, fromId, toId, 10)).isEqualTo(404);
+
+		assertThat(cluster.balance(node, fromId)).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test internal calls are rejected without the
+	 * cluster secret
+	 */
+	@Test
+	void internalCallWithoutSecretTest() throws Exception {
+		String fromId = "from-4";
+		String node = cluster.ownerOf(fromId);
+		cluster.createAccount(node, fromId, 1000);
+
+		assertThat(cluster.post(node, "/internal/cluster/transactions/forged-1/prepare-credit",
+				"{\"accountId\":\"" + fromId + "\",\"amount\":500}")).isEqualTo(401);
+		assertThat(cluster.post(node, "/internal/cluster/transactions/forged-1/commit", "")).isEqualTo(401);
+
+		assertThat(cluster.balance(node, fromId)).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test a retried reserve is applied once and a
+	 * reserve after the abort is refused
+	 */
+	@Test
+	void reserveIdempotentTest() throws Exception {
+		String accountId = "from-5";
+		String node = cluster.ownerOf(accountId);
+		String reserve = "{\"accountId\":\"" + accountId + "\",\"amount\":100,\"coordinator\":\"" + node
+				+ "\"}";
+		cluster.createAccount(node, accountId, 1000);
+
+		assertThat(cluster.postInternal(node, "/transactions/tx-5/reserve", reserve)).isEqualTo(200);
+		assertThat(cluster.postInternal(node, "/transactions/tx-5/reserve", reserve)).isEqualTo(200);
+		assertThat(cluster.balance(node, accountId)).isEqualByComparingTo("900");
+
+		assertThat(cluster.postInternal(node, "/transactions/tx-5/abort", "")).isEqualTo(200);
+		assertThat(cluster.postInternal(node, "/transactions/tx-5/abort", "")).isEqualTo(200);
+		assertThat(cluster.balance(node, accountId)).isEqualByComparingTo("1000");
+
+		// Abort received before a late reserve
+		assertThat(cluster.postInternal(node, "/transactions/tx-6/abort", "")).isEqualTo(200);
+		assertThat(cluster.postInternal(node, "/transactions/tx-6/reserve", reserve)).isEqualTo(409);
+		assertThat(cluster.balance(node, accountId)).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test a reservation never committed is refunded
+	 * once its coordinator is asked for the decision
+	 */
+	@Test
+	void reserveRecoveredTest() throws Exception {
+		String accountId = "from-7";
+		String node = cluster.ownerOf(accountId);
+		String coordinator = cluster.getNodes().stream().filter(other -> !other.equals(node)).findFirst().get();
+		cluster.createAccount(node, accountId, 1000);
+
+		assertThat(cluster.postInternal(node, "/transactions/tx-7/reserve", "{\"accountId\":\"" + accountId
+				+ "\",\"amount\":100,\"coordinator\":\"" + coordinator + "\"}")).isEqualTo(200);
+		assertThat(cluster.balance(node, accountId)).isEqualByComparingTo("900");
+
+		long deadline = System.currentTimeMillis() + 10000;
+		while (cluster.balance(node, accountId).compareTo(new BigDecimal("1000")) != 0
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(cluster.balance(node, accountId)).isEqualByComparingTo("1000");
+	}
+
+	/**
+	 * This function is used for test the balances of every node are conserved,
+	 * the cross partition transfers are counted as money leaving and entering
+	 * the nodes
+	 */
+	@Test
+	void reconcileNodesTest() throws Exception {
+		String fromId = "from-8";
+		String toId = accountOnOtherNode("to-8-", fromId);
+		String node = cluster.ownerOf(fromId);
+		cluster.createAccount(node, fromId, 1000);
+		cluster.createAccount(node, toId, 1000);
+
+		assertThat(cluster.transfer(node, fromId, toId, 10)).isEqualTo(200);
+		assertThat(cluster.transfer(node, toId, fromId, 20)).isEqualTo(200);
+		assertThat(cluster.transfer(node, toId, fromId, 2000)).isEqualTo(400);
+
+		for (String each : cluster.getNodes()) {
+			ReconciliationReport report = cluster.getBean(each, BalanceReconciler.class).reconcile();
+			assertThat(report.isConserved()).isTrue();
+		}
+	}
+
+	/**
+	 * This function is used for test a transfer between partitions is published
+	 * to the event stream of the to account owner once committed
+	 */
+	@Test
+	void transferBetweenPartitionsPublishedTest() throws Exception {
+		String fromId = "from-11";
+		String toId = accountOnOtherNode("to-11-", fromId);
+		String node = cluster.ownerOf(fromId);
+		cluster.createAccount(node, fromId, 1000);
+		cluster.createAccount(node, toId, 1000);
+		TransferEventRingBuffer ringBuffer = cluster.getBean(cluster.ownerOf(toId), TransferEventRingBuffer.class);
+		long cursor = ringBuffer.getCursor();
+
+		assertThat(cluster.transfer(node, fromId, toId, 10)).isEqualTo(200);
+		assertThat(cluster.transfer(node, fromId, toId, 2000)).isEqualTo(400);
+
+		assertThat(ringBuffer.getCursor()).isEqualTo(cursor + 1);
+		TransferEvent event = ringBuffer.read(cursor);
+		assertThat(event.accountFromId()).isEqualTo(fromId);
+		assertThat(event.accountToId()).isEqualTo(toId);
+		assertThat(event.amount()).isEqualByComparingTo("10");
+	}
+
+	/**
+	 * This function is used for test rates updated on any node are published by
+	 * the rates node and sent to all the nodes with the same version
+	 */
+	@Test
+	void updateRatesTest() throws Exception {
+		String node = cluster.getNodes().get(1);
+		long version = cluster.rates(node).get("version").asLong();
+
+		assertThat(cluster.updateRates(node, "{\"USD\":1.10}")).isEqualTo(200);
+
+		for (String other : cluster.getNodes()) {
+			assertThat(cluster.rates(other).get("version").asLong()).isEqualTo(version + 1);
+			assertThat(cluster.rates(other).get("rates").get("USD").decimalValue()).isEqualByComparingTo("1.10");
+		}
+	}
+
+	/**
+	 * This function is used for test a credit converted with other rates than
+	 * the ones of the coordinator is refused
+	 */
+	@Test
+	void prepareCreditRatesVersionTest() throws Exception {
+		String accountId = "usd-8";
+		String node = cluster.ownerOf(accountId);
+		assertThat(cluster.post(node, "/v1/accounts",
+				"{\"accountId\":\"" + accountId + "\",\"balance\":1000,\"currency\":\"USD\"}")).isEqualTo(201);
+		long version = cluster.rates(node).get("version").asLong();
+
+		assertThat(cluster.postInternal(node, "/transactions/tx-8/prepare-credit",
+				"{\"accountId\":\"" + accountId + "\",\"amount\":100,\"currency\":\"EUR\",\"coordinator\":\""
+						+ node + "\",\"fxVersion\":" + (version + 10) + "}")).isEqualTo(409);
+		assertThat(cluster.postInternal(node, "/transactions/tx-9/prepare-credit",
+				"{\"accountId\":\"" + accountId + "\",\"amount\":100,\"currency\":\"EUR\",\"coordinator\":\""
+						+ node + "\",\"fxVersion\":" + version + "}")).isEqualTo(200);
+		assertThat(cluster.postInternal(node, "/transactions/tx-9/abort", "")).isEqualTo(200);
+	}
+
+	/**
+	 * This function is used for test the balance at a past time is read from the
+	 * history of the node owning the account
+	 */
+	@Test
+	void balanceAsOfOnOtherNodeTest() throws Exception {
+		String fromId = "from-10";
+		String toId = accountOnOtherNode("to-10-", fromId);
+		String node = cluster.getNodes().stream().filter(other -> !other.equals(cluster.ownerOf(fromId))).findFirst()
+				.get();
+		cluster.createAccount(node, fromId, 1000);
+		cluster.createAccount(node, toId, 1000);
+		assertThat(cluster.transfer(node, fromId, toId, 10)).isEqualTo(200);
+		Instant asOf = Instant.now();
+
+		assertThat(cluster.balanceAsOf(node, fromId, asOf)).isEqualByComparingTo("990");
+		for (String other : cluster.getNodes()) {
+			assertThat(cluster.balanceAsOf(other, toId, asOf)).isEqualByComparingTo("1010");
+		}
+	}
+}
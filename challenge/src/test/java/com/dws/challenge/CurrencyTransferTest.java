@@ -0,0 +1,147 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.fx.FxRateTable;
+import com.dws.challenge.fx.FxRates;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest
+@WebAppConfiguration
+class CurrencyTransferTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private FxRates fxRates;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	// Rates before the test, restored with all their currencies only
+	private FxRateTable originalRates;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		originalRates = fxRates.getTable();
+
+		// Reset the existing accounts before each test.
+		accountsService.clearAccounts();
+		accountsService.createAccount(new Account("eur-1", new BigDecimal("1000.00")));
+		accountsService.createAccount(new Account("usd-1", new BigDecimal("1000.00"), "USD"));
+	}
+
+	@AfterEach
+	void restoreRates() {
+		fxRates.install(FxRateTable.of(originalRates.getBaseCurrency(), fxRates.getTable().getVersion() + 1,
+				originalRates.getRates()));
+	}
+
+	/**
+	 * This function is used for test the amount is converted to the currency of
+	 * the to account
+	 */
+	@Test
+	void transferBetweenCurrenciesTest() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/amount/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountFromId\":\"eur-1\",\"accountToId\":\"usd-1\",\"amount\":100,\"currency\":\"EUR\"}"))
+				.andExpect(status().isOk());
+
+		assertThat(accountsService.getAccount("eur-1").getBalance()).isEqualByComparingTo("900.00");
+		assertThat(accountsService.getAccount("usd-1").getBalance()).isEqualByComparingTo("1108.23");
+
+		this.mockMvc.perform(get("/v1/accounts/usd-1")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.currency").value("USD"));
+	}
+
+	/**
+	 * This function is used for test a currency not matching the from account is
+	 * rejected without any balance change
+	 */
+	@Test
+	void transferCurrencyMismatchTest() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/amount/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountFromId\":\"eur-1\",\"accountToId\":\"usd-1\",\"amount\":100,\"currency\":\"USD\"}"))
+				.andExpect(status().isBadRequest());
+
+		assertThat(accountsService.getAccount("eur-1").getBalance()).isEqualByComparingTo("1000.00");
+		assertThat(accountsService.getAccount("usd-1").getBalance()).isEqualByComparingTo("1000.00");
+	}
+
+	/**
+	 * This function is used for test a transfer to a currency without rate is
+	 * rejected without any balance change
+	 */
+	@Test
+	void transferWithoutRateTest() throws Exception {
+		accountsService.createAccount(new Account("nok-1", new BigDecimal("1000.00"), "NOK"));
+
+		this.mockMvc.perform(post("/v1/accounts/amount/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountFromId\":\"eur-1\",\"accountToId\":\"nok-1\",\"amount\":100}"))
+				.andExpect(status().isBadRequest());
+
+		assertThat(accountsService.getAccount("eur-1").getBalance()).isEqualByComparingTo("1000.00");
+		assertThat(accountsService.getAccount("nok-1").getBalance()).isEqualByComparingTo("1000.00");
+	}
+
+	/**
+	 * This function is used for test an account is only created with an ISO 4217
+	 * currency having a minor unit
+	 */
+	@Test
+	void createAccountUnknownCurrencyTest() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"xyz-1\",\"balance\":1000,\"currency\":\"XYZ\"}"))
+				.andExpect(status().isBadRequest());
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"xau-1\",\"balance\":1000,\"currency\":\"XAU\"}"))
+				.andExpect(status().isBadRequest());
+
+		this.mockMvc.perform(get("/v1/accounts/xyz-1")).andExpect(status().isNotFound());
+		this.mockMvc.perform(get("/v1/accounts/xau-1")).andExpect(status().isNotFound());
+	}
+
+	/**
+	 * This function is used for test updated rates are used by the next transfer
+	 */
+	@Test
+	void updateRatesTest() throws Exception {
+		long version = fxRates.getTable().getVersion();
+
+		this.mockMvc.perform(put("/v1/fx/rates").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"USD\":1.10,\"SEK\":11.25}")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.version").value(version + 1))
+				.andExpect(jsonPath("$.rates.SEK").value(11.25));
+		this.mockMvc.perform(put("/v1/fx/rates").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"USD\":-1}")).andExpect(status().isBadRequest());
+		this.mockMvc.perform(get("/v1/fx/rates")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.baseCurrency").value("EUR")).andExpect(jsonPath("$.rates.USD").value(1.10));
+
+		accountsService.transfer("usd-1", "eur-1", new BigDecimal("110.00"));
+
+		assertThat(accountsService.getAccount("usd-1").getBalance()).isEqualByComparingTo("890.00");
+		assertThat(accountsService.getAccount("eur-1").getBalance()).isEqualByComparingTo("1100.00");
+	}
+}
@@ -0,0 +1,96 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+
+import com.dws.challenge.exception.CurrencyConversionException;
+import com.dws.challenge.exception.InvalidCurrencyException;
+import com.dws.challenge.fx.FxRateTable;
+import org.junit.jupiter.api.Test;
+
+class FxRateTableTest {
+
+	private final FxRateTable table = FxRateTable.of("EUR").with(Map.of("USD", new BigDecimal("1.0823"), "JPY",
+			new BigDecimal("162.45"), "BHD", new BigDecimal("0.4075")));
+
+	/**
+	 * This function is used for test conversions are rounded to the minor unit of
+	 * the to currency
+	 */
+	@Test
+	void convertTest() {
+		assertThat(table.convert(new BigDecimal("100"), "EUR", "USD")).isEqualTo(new BigDecimal("108.23"));
+		assertThat(table.convert(new BigDecimal("100.00"), "USD", "EUR")).isEqualTo(new BigDecimal("92.40"));
+		assertThat(table.convert(new BigDecimal("10000"), "JPY", "USD")).isEqualTo(new BigDecimal("66.62"));
+		assertThat(table.convert(new BigDecimal("1.005"), "BHD", "JPY")).isEqualTo(new BigDecimal("401"));
+		assertThat(table.convert(new BigDecimal("12.34"), "EUR", "EUR")).isEqualTo(new BigDecimal("12.34"));
+	}
+
+	/**
+	 * This function is used for test the fixed point conversion gives the same
+	 * amount as the BigDecimal computation of the factor, large amounts included
+	 */
+	@Test
+	void convertMatchesBigDecimalTest() {
+		Random random = new Random(42);
+		// Dollars for one yen, 18 significant digits
+		BigDecimal factor = new BigDecimal("1.0823").divide(new BigDecimal("162.45"),
+				new MathContext(18, RoundingMode.HALF_EVEN));
+		for (int i = 0; i < 10_000; i++) {
+			// Every other amount is large enough to need the 128 bits product
+			long yen = i % 2 == 0 ? random.nextInt(1_000_000) : random.nextLong(1L << 52);
+			BigDecimal expected = BigDecimal.valueOf(yen).multiply(factor).setScale(2, RoundingMode.HALF_UP);
+			assertThat(table.convert(BigDecimal.valueOf(yen), "JPY", "USD")).isEqualTo(expected);
+		}
+	}
+
+	/**
+	 * This function is used for test a weak to strong currency factor, far below
+	 * one, keeps its precision on large amounts
+	 */
+	@Test
+	void convertWeakToStrongTest() {
+		FxRateTable weak = table.with(Map.of("VND", new BigDecimal("27000")));
+
+		assertThat(weak.convert(new BigDecimal("2700000000000000"), "VND", "BHD"))
+				.isEqualTo(new BigDecimal("40750000000.000"));
+		assertThat(weak.convert(new BigDecimal("1"), "VND", "BHD")).isEqualTo(new BigDecimal("0.000"));
+		assertThat(weak.convert(new BigDecimal("34"), "VND", "BHD")).isEqualTo(new BigDecimal("0.001"));
+		assertThat(weak.convert(new BigDecimal("40750000000.000"), "BHD", "VND"))
+				.isEqualTo(new BigDecimal("2700000000000000"));
+	}
+
+	/**
+	 * This function is used for test a new table is built on update, the
+	 * published table is left unchanged
+	 */
+	@Test
+	void withTest() {
+		FxRateTable updated = table.with(Map.of("USD", new BigDecimal("1.10"), "GBP", new BigDecimal("0.85")));
+
+		assertThat(updated.getVersion()).isEqualTo(table.getVersion() + 1);
+		assertThat(updated.contains("GBP")).isTrue();
+		assertThat(table.contains("GBP")).isFalse();
+		assertThat(updated.convert(new BigDecimal("100"), "EUR", "USD")).isEqualTo(new BigDecimal("110.00"));
+		assertThat(table.convert(new BigDecimal("100"), "EUR", "USD")).isEqualTo(new BigDecimal("108.23"));
+	}
+
+	/**
+	 * This function is used for test invalid rates and conversions are rejected
+	 */
+	@Test
+	void invalidConversionTest() {
+		assertThrows(CurrencyConversionException.class, () -> table.convert(BigDecimal.ONE, "EUR", "GBP"));
+		assertThrows(CurrencyConversionException.class, () -> table.convert(new BigDecimal("0.001"), "EUR", "USD"));
+		assertThrows(CurrencyConversionException.class, () -> table.with(Map.of("USD", BigDecimal.ZERO)));
+		assertThrows(CurrencyConversionException.class, () -> table.with(Map.of("EUR", new BigDecimal("2"))));
+		assertThrows(InvalidCurrencyException.class, () -> table.with(Map.of("XYZ", BigDecimal.ONE)));
+		assertThrows(InvalidCurrencyException.class, () -> table.with(Map.of("XAU", BigDecimal.ONE)));
+	}
+}
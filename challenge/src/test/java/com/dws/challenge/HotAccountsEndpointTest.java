@@ -0,0 +1,88 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import com.dws.challenge.diagnostics.LockContentionMonitor;
+import com.dws.challenge.diagnostics.SpaceSavingSketch;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest(properties = "diagnostics.lock-sample-rate=1")
+@WebAppConfiguration
+class HotAccountsEndpointTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private LockContentionMonitor lockContentionMonitor;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+		// Reset the existing accounts and statistics before each test.
+		accountsService.clearAccounts();
+		lockContentionMonitor.reset();
+	}
+
+	/**
+	 * This function is used for test the account used by most transfers is
+	 * reported first
+	 */
+	@Test
+	void hottestAccountTest() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			accountsService.createAccount(new Account("acc-" + i, new BigDecimal(1000)));
+		}
+		for (int i = 1; i < 10; i++) {
+			accountsService.transfer("acc-0", "acc-" + i, BigDecimal.ONE);
+			accountsService.transfer("acc-" + i, "acc-0", BigDecimal.ONE);
+		}
+
+		this.mockMvc.perform(get("/actuator/hotaccounts")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.sampledTransfers").value(18))
+				.andExpect(jsonPath("$.hottestByTraffic[0].accountId").value("acc-0"))
+				.andExpect(jsonPath("$.hottestByTraffic[0].count").value(18))
+				.andExpect(jsonPath("$.hottestByTraffic[0].lockWait.samples").value(18));
+	}
+
+	/**
+	 * This function is used for test the sketch keeps the heavy hitters with a
+	 * fixed number of counters
+	 */
+	@Test
+	void spaceSavingKeepsHeavyHittersTest() {
+		SpaceSavingSketch sketch = new SpaceSavingSketch(8);
+		for (int i = 0; i < 10_000; i++) {
+			// Every third occurrence is the hot account, the others are all different
+			sketch.offer(i % 3 == 0 ? "hot" : "cold-" + i, 1, 0, 0);
+		}
+
+		List<Map<String, Object>> top = sketch.top(3);
+		assertThat(top).hasSize(3);
+		assertThat(top.get(0).get("accountId")).isEqualTo("hot");
+		assertThat((Long) top.get(0).get("count")).isGreaterThanOrEqualTo(3334L);
+		assertThat(sketch.getTotal()).isEqualTo(10_000L);
+	}
+}
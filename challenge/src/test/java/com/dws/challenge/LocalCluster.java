@@ -0,0 +1,127 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dws.challenge.cluster.ConsistentHashRing;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalanceAsOf;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts several instances of the application in cluster mode on local ports.
+ */
+class LocalCluster implements AutoCloseable {
+
+	private static final String SECRET = "local-cluster-secret";
+
+	private final List<String> nodes = new ArrayList<>();
+
+	private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+	private final ConsistentHashRing ring;
+
+	LocalCluster(int size, String... properties) throws IOException {
+		for (int i = 0; i < size; i++) {
+			nodes.add("http://localhost:" + freePort());
+		}
+		for (String node : nodes) {
+			List<String> args = new ArrayList<>(List.of("--server.port=" + URI.create(node).getPort(),
+					"--cluster.self=" + node, "--cluster.nodes=" + String.join(",", nodes),
+					"--cluster.secret=" + SECRET));
+			args.addAll(List.of(properties));
+			contexts.add(new SpringApplicationBuilder(ChallengeApplication.class).profiles("cluster")
+					.run(args.toArray(String[]::new)));
+		}
+		ring = new ConsistentHashRing(nodes, 128);
+	}
+
+	List<String> getNodes() {
+		return nodes;
+	}
+
+	<T> T getBean(String node, Class<T> type) {
+		return contexts.get(nodes.indexOf(node)).getBean(type);
+	}
+
+	String ownerOf(String accountId) {
+		return ring.ownerOf(accountId);
+	}
+
+	int createAccount(String node, String accountId, long balance) throws Exception {
+		return post(node, "/v1/accounts", "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}");
+	}
+
+	int transfer(String node, String accountFromId, String accountToId, long amount) throws Exception {
+		return post(node, "/v1/accounts/amount/transfer", "{\"accountFromId\":\"" + accountFromId
+				+ "\",\"accountToId\":\"" + accountToId + "\",\"amount\":" + amount + "}");
+	}
+
+	BigDecimal balance(String node, String accountId) throws Exception {
+		HttpResponse<String> response = httpClient.send(
+				HttpRequest.newBuilder(URI.create(node + "/v1/accounts/" + accountId)).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+		return objectMapper.readValue(response.body(), Account.class).getBalance();
+	}
+
+	BigDecimal balanceAsOf(String node, String accountId, Instant asOf) throws Exception {
+		HttpResponse<String> response = httpClient.send(
+				HttpRequest.newBuilder(URI.create(node + "/v1/accounts/" + accountId + "/balance?asOf=" + asOf)).GET()
+						.build(),
+				HttpResponse.BodyHandlers.ofString());
+		return objectMapper.readValue(response.body(), BalanceAsOf.class).getBalance();
+	}
+
+	int updateRates(String node, String rates) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/v1/fx/rates"))
+				.header("Content-Type", "application/json").PUT(HttpRequest.BodyPublishers.ofString(rates)).build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	JsonNode rates(String node) throws Exception {
+		HttpResponse<String> response = httpClient.send(
+				HttpRequest.newBuilder(URI.create(node + "/v1/fx/rates")).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+		return objectMapper.readTree(response.body());
+	}
+
+	int post(String node, String path, String body) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+				.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body)).build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	// Internal call as sent by a cluster node
+	int postInternal(String node, String path, String body) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/internal/cluster" + path))
+				.header("Content-Type", "application/json").header("X-Cluster-Secret", SECRET)
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	@Override
+	public void close() {
+		contexts.forEach(ConfigurableApplicationContext::close);
+	}
+}
@@ -0,0 +1,268 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.replication.ReplicaReadInterceptor;
+import com.dws.challenge.replication.ReplicationPrimary;
+import com.dws.challenge.replication.ReplicationReplica;
+import com.dws.challenge.service.BalanceReconciler;
+import com.dws.challenge.service.ReconciliationReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ReplicationTest {
+
+	private static ConfigurableApplicationContext primary;
+
+	private static ConfigurableApplicationContext replica;
+
+	private static String primaryUrl;
+
+	private static String replicaUrl;
+
+	private final HttpClient httpClient = HttpClient.newHttpClient();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@BeforeAll
+	static void startPrimaryAndReplica() throws Exception {
+		int replicationPort = freePort();
+		int primaryPort = freePort();
+		int replicaPort = freePort();
+		primaryUrl = "http://localhost:" + primaryPort;
+		replicaUrl = "http://localhost:" + replicaPort;
+		primary = new SpringApplicationBuilder(ChallengeApplication.class).profiles("primary")
+				.run("--server.port=" + primaryPort, "--replication.port=" + replicationPort);
+		replica = new SpringApplicationBuilder(ChallengeApplication.class).profiles("replica").run(
+				"--server.port=" + replicaPort, "--replication.port=" + replicationPort,
+				"--replication.reconnect-ms=100");
+	}
+
+	@AfterAll
+	static void stop() {
+		replica.close();
+		primary.close();
+	}
+
+	/**
+	 * This function is used for test replica reads its own writes with the token
+	 * returned by the transfer on the primary
+	 */
+	@Test
+	void readYourWritesTest() throws Exception {
+		assertThat(post(primaryUrl + "/v1/accounts", "{\"accountId\":\"r-1\",\"balance\":1000}").statusCode())
+				.isEqualTo(201);
+		assertThat(post(primaryUrl + "/v1/accounts", "{\"accountId\":\"r-2\",\"balance\":1000}").statusCode())
+				.isEqualTo(201);
+
+		HttpResponse<String> transfer = post(primaryUrl + "/v1/accounts/amount/transfer",
+				"{\"accountFromId\":\"r-1\",\"accountToId\":\"r-2\",\"amount\":10}");
+		assertThat(transfer.statusCode()).isEqualTo(200);
+		String token = transfer.headers().firstValue(ReplicationPrimary.TOKEN_HEADER).orElseThrow();
+
+		HttpResponse<String> read = httpClient.send(HttpRequest.newBuilder(URI.create(replicaUrl + "/v1/accounts/r-1"))
+				.header(ReplicationPrimary.TOKEN_HEADER, token).GET().build(), HttpResponse.BodyHandlers.ofString());
+		assertThat(read.statusCode()).isEqualTo(200);
+		assertThat(read.headers().firstValue(ReplicaReadInterceptor.LAG_HEADER)).isPresent();
+		assertThat(objectMapper.readValue(read.body(), Account.class).getBalance()).isEqualByComparingTo("990");
+	}
+
+	/**
+	 * This function is used for test replica rejects writes
+	 */
+	@Test
+	void replicaIsReadOnlyTest() throws Exception {
+		assertThat(post(replicaUrl + "/v1/accounts", "{\"accountId\":\"r-3\",\"balance\":1000}").statusCode())
+				.isEqualTo(405);
+	}
+
+	/**
+	 * This function is used for test replica answers balance history queries
+	 * with not implemented, the history is kept by the primary
+	 */
+	@Test
+	void replicaHasNoHistoryTest() throws Exception {
+		HttpResponse<String> read = httpClient.send(HttpRequest
+				.newBuilder(URI.create(replicaUrl + "/v1/accounts/r-1/balance?asOf=" + Instant.now())).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+		assertThat(read.statusCode()).isEqualTo(501);
+	}
+
+	/**
+	 * This function is used for test a malformed replication token is a bad
+	 * request
+	 */
+	@Test
+	void malformedTokenTest() throws Exception {
+		HttpResponse<String> read = httpClient.send(HttpRequest.newBuilder(URI.create(replicaUrl + "/v1/accounts/r-1"))
+				.header(ReplicationPrimary.TOKEN_HEADER, "not-a-number").GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+		assertThat(read.statusCode()).isEqualTo(400);
+	}
+
+	/**
+	 * This function is used for test the changes appended concurrently on the
+	 * primary reach the replica complete
+	 */
+	@Test
+	void concurrentWritesReplicatedTest() throws Exception {
+		int accounts = 16;
+		for (int i = 0; i < accounts; i++) {
+			post(primaryUrl + "/v1/accounts", "{\"accountId\":\"c-" + i + "\",\"balance\":1000}");
+		}
+		ExecutorService writers = Executors.newFixedThreadPool(8);
+		List<Future<?>> results = new ArrayList<>();
+		for (int w = 0; w < 8; w++) {
+			int writer = w;
+			results.add(writers.submit(() -> {
+				for (int t = 0; t < 50; t++) {
+					int from = (writer * 2) % accounts;
+					post(primaryUrl + "/v1/accounts/amount/transfer", "{\"accountFromId\":\"c-" + from
+							+ "\",\"accountToId\":\"c-" + (from + 1) + "\",\"amount\":1}");
+				}
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		writers.shutdown();
+
+		HttpResponse<String> last = post(primaryUrl + "/v1/accounts/amount/transfer",
+				"{\"accountFromId\":\"c-1\",\"accountToId\":\"c-0\",\"amount\":1}");
+		String token = last.headers().firstValue(ReplicationPrimary.TOKEN_HEADER).orElseThrow();
+		for (int i = 0; i < accounts; i++) {
+			HttpResponse<String> primaryRead = httpClient.send(
+					HttpRequest.newBuilder(URI.create(primaryUrl + "/v1/accounts/c-" + i)).GET().build(),
+					HttpResponse.BodyHandlers.ofString());
+			HttpResponse<String> replicaRead = httpClient.send(
+					HttpRequest.newBuilder(URI.create(replicaUrl + "/v1/accounts/c-" + i))
+							.header(ReplicationPrimary.TOKEN_HEADER, token).GET().build(),
+					HttpResponse.BodyHandlers.ofString());
+			assertThat(objectMapper.readValue(replicaRead.body(), Account.class).getBalance()).isEqualByComparingTo(
+					objectMapper.readValue(primaryRead.body(), Account.class).getBalance());
+		}
+	}
+
+	/**
+	 * This function is used for test the replica balances are reconciled at the
+	 * cuts of the primary while transfers go on
+	 */
+	@Test
+	void reconcileAtPrimaryCutsTest() throws Exception {
+		int accounts = 8;
+		for (int i = 0; i < accounts; i++) {
+			post(primaryUrl + "/v1/accounts", "{\"accountId\":\"k-" + i + "\",\"balance\":1000}");
+		}
+		BalanceReconciler primaryReconciler = primary.getBean(BalanceReconciler.class);
+		BalanceReconciler replicaReconciler = replica.getBean(BalanceReconciler.class);
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService writers = Executors.newFixedThreadPool(2);
+		List<Future<?>> results = new ArrayList<>();
+		for (int w = 0; w < 2; w++) {
+			results.add(writers.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					post(primaryUrl + "/v1/accounts/amount/transfer", "{\"accountFromId\":\"k-"
+							+ random.nextInt(accounts) + "\",\"accountToId\":\"k-" + random.nextInt(accounts)
+							+ "\",\"amount\":1}");
+				}
+				return null;
+			}));
+		}
+
+		// The first cut may include changes made before the snapshot of the replica
+		primaryReconciler.reconcile();
+		List<ReconciliationReport> reports = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			long cut = primaryReconciler.reconcile().epoch();
+			long deadline = System.currentTimeMillis() + 10000;
+			while ((replicaReconciler.getLastReport() == null || replicaReconciler.getLastReport().epoch() < cut)
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			reports.add(replicaReconciler.getLastReport());
+		}
+		running.set(false);
+		for (Future<?> result : results) {
+			result.get();
+		}
+		writers.shutdown();
+
+		assertThat(reports).allSatisfy(report -> assertThat(report.isConserved()).isTrue());
+		assertThat(reports.get(reports.size() - 1).currencies().get("EUR").total()).isPositive();
+	}
+
+	/**
+	 * This function is used for test the replica keeps serving its accounts while
+	 * it is resynchronised with a new snapshot
+	 */
+	@Test
+	void resyncKeepsServingTest() throws Exception {
+		assertThat(post(primaryUrl + "/v1/accounts", "{\"accountId\":\"s-1\",\"balance\":1000}").statusCode())
+				.isEqualTo(201);
+		ReplicationReplica replicationReplica = replica.getBean(ReplicationReplica.class);
+		assertThat(replicationReplica.awaitSequence(primary.getBean(ReplicationPrimary.class).getLastSequence(), 5000))
+				.isTrue();
+
+		List<Integer> statuses = new CopyOnWriteArrayList<>();
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService reader = Executors.newSingleThreadExecutor();
+		Future<?> reads = reader.submit(() -> {
+			while (running.get()) {
+				statuses.add(httpClient.send(HttpRequest.newBuilder(URI.create(replicaUrl + "/v1/accounts/s-1")).GET()
+						.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+			}
+			return null;
+		});
+		for (int i = 0; i < 3; i++) {
+			// The replica reconnects and receives a new snapshot
+			Socket socket = (Socket) ReflectionTestUtils.getField(replicationReplica, "socket");
+			socket.close();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (ReflectionTestUtils.getField(replicationReplica, "socket") == socket
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(200);
+		}
+		running.set(false);
+		reads.get();
+		reader.shutdown();
+
+		assertThat(statuses).isNotEmpty().containsOnly(200);
+	}
+
+	private HttpResponse<String> post(String url, String body) throws Exception {
+		return httpClient.send(HttpRequest.newBuilder(URI.create(url)).header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private static int freePort() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+@SpringBootTest
+@WebAppConfiguration
+@ActiveProfiles("startup")
+class StartupConfigTest {
+
+	@Autowired
+	private ConfigurableApplicationContext context;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	/**
+	 * This function is used for test the beans running background work are
+	 * created with the context and the other ones on first use
+	 */
+	@Test
+	void backgroundBeansStartedEagerlyTest() {
+		assertThat(context.getBeanFactory().containsSingleton("balanceReconciler")).isTrue();
+		assertThat(context.getBeanFactory().containsSingleton("balanceHistory")).isTrue();
+		assertThat(context.getBeanFactory().containsSingleton("cachedClock")).isTrue();
+		assertThat(context.getBeanFactory().containsSingleton("asyncTransferService")).isTrue();
+		assertThat(context.getBeanFactory().containsSingleton("transferEventStreamer")).isFalse();
+	}
+
+	/**
+	 * This function is used for test the beans not needed by the accounts API
+	 * are defined lazy and not created by the startup
+	 */
+	@Test
+	void otherBeansCreatedOnFirstUseTest() {
+		for (String beanName : new String[] { "fxRatesController", "transferEventsController",
+				"transferEventStreamer" }) {
+			assertThat(context.getBeanFactory().getBeanDefinition(beanName).isLazyInit()).isTrue();
+			assertThat(context.getBeanFactory().containsSingleton(beanName)).isFalse();
+		}
+		assertThat(context.getBeanFactory().getBeanDefinition("accountsController").isLazyInit()).isFalse();
+	}
+
+	/**
+	 * This function is used for test the startup optimized run serves the
+	 * accounts API, a transfer included
+	 */
+	@Test
+	void transferServedTest() throws Exception {
+		MockMvc mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		accountsService.clearAccounts();
+
+		mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1001\",\"balance\":1000}")).andExpect(status().isCreated());
+		mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountId\":\"1002\",\"balance\":1000}")).andExpect(status().isCreated());
+
+		mockMvc.perform(post("/v1/accounts/amount/transfer").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"accountFromId\": \"1001\",\"accountToId\": \"1002\",\"amount\": 10}"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.accountFromBalance").value(990))
+				.andExpect(jsonPath("$.accountToBalance").value(1010));
+	}
+}
@@ -0,0 +1,99 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferAmount;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.web.AccountsController;
+
+/**
+ * Measures the bytes allocated by the request thread per synchronous transfer,
+ * for the receipt response and the legacy message response
+ * (transfers.legacy-message). Run with the benchmark task, the absolute bytes
+ * per request of both are published as report entries of the test.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class TransferAllocationBenchmarkTest {
+
+	private static final int WARMUP = 20_000;
+
+	private static final int REQUESTS = 50_000;
+
+	private static final long INITIAL_BALANCE = 1_000_000_000;
+
+	@Autowired
+	private AccountsController accountsController;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	@BeforeEach
+	void createAccounts() {
+		accountsService.clearAccounts();
+		accountsService.createAccount(new Account("bench-1", BigDecimal.valueOf(INITIAL_BALANCE)));
+		accountsService.createAccount(new Account("bench-2", BigDecimal.valueOf(INITIAL_BALANCE)));
+	}
+
+	@Test
+	void allocatedBytesPerTransfer(TestReporter testReporter) throws Exception {
+		TransferAmount forth = new TransferAmount("bench-1", "bench-2", BigDecimal.ONE);
+		TransferAmount back = new TransferAmount("bench-2", "bench-1", BigDecimal.ONE);
+
+		ReflectionTestUtils.setField(accountsController, "legacyMessage", false);
+		long receipt = bytesPerRequest(() -> accountsController.transferAmount(forth, null),
+				() -> accountsController.transferAmount(back, null));
+
+		ReflectionTestUtils.setField(accountsController, "legacyMessage", true);
+		long legacy;
+		try {
+			legacy = bytesPerRequest(() -> accountsController.transferAmount(forth, null),
+					() -> accountsController.transferAmount(back, null));
+		} finally {
+			ReflectionTestUtils.setField(accountsController, "legacyMessage", false);
+		}
+
+		testReporter.publishEntry("receiptBytesPerRequest", Long.toString(receipt));
+		testReporter.publishEntry("legacyBytesPerRequest", Long.toString(legacy));
+
+		assertThat(receipt).isPositive();
+		assertThat(legacy).isPositive();
+		assertThat(accountsService.getAccount("bench-1").getBalance())
+				.isEqualByComparingTo(BigDecimal.valueOf(INITIAL_BALANCE));
+	}
+
+	// Transfers back and forth so the balances stay the same
+	private long bytesPerRequest(Request forth, Request back) throws Exception {
+		for (int i = 0; i < WARMUP; i++) {
+			forth.run();
+			back.run();
+		}
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < REQUESTS; i++) {
+			forth.run();
+			back.run();
+		}
+		return (threads.getCurrentThreadAllocatedBytes() - before) / (REQUESTS * 2L);
+	}
+
+	@FunctionalInterface
+	private interface Request {
+
+		void run() throws Exception;
+	}
+}
@@ -0,0 +1,108 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.events.TransferEvent;
+import com.dws.challenge.events.TransferEventRingBuffer;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class TransferEventRingBufferTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransferEventRingBuffer transferEventRingBuffer;
+
+	/**
+	 * This function is used for test a committed transfer is published and a
+	 * failed one is not
+	 */
+	@Test
+	void transferIsPublishedTest() {
+		accountsService.clearAccounts();
+		accountsService.createAccount(new Account("1001", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("1002", new BigDecimal(1000)));
+
+		long cursor = transferEventRingBuffer.getCursor();
+		accountsService.transfer("1001", "1002", BigDecimal.TEN);
+		try {
+			accountsService.transfer("1001", "1003", BigDecimal.TEN);
+		} catch (RuntimeException e) {
+			// Failed transfer is not published
+		}
+
+		assertThat(transferEventRingBuffer.getCursor()).isEqualTo(cursor + 1);
+		TransferEvent event = transferEventRingBuffer.read(cursor);
+		assertThat(event.accountFromId()).isEqualTo("1001");
+		assertThat(event.accountToId()).isEqualTo("1002");
+		assertThat(event.amount()).isEqualByComparingTo("10");
+	}
+
+	/**
+	 * This function is used for test a reader detects the events overwritten
+	 * after the buffer wrapped
+	 */
+	@Test
+	void overwrittenEventsTest() {
+		TransferEventRingBuffer ringBuffer = new TransferEventRingBuffer(4);
+		for (int i = 0; i < 6; i++) {
+			ringBuffer.publish("from-" + i, "to-" + i, BigDecimal.ONE);
+		}
+
+		assertThat(ringBuffer.getOldestAvailable()).isEqualTo(2);
+		assertThat(ringBuffer.read(1)).isNull();
+		assertThat(ringBuffer.read(2).accountFromId()).isEqualTo("from-2");
+		assertThat(ringBuffer.read(5).accountFromId()).isEqualTo("from-5");
+		assertThat(ringBuffer.read(6)).isNull();
+	}
+
+	/**
+	 * This function is used for test publishers sharing a slot after the buffer
+	 * wrapped never mix their fields
+	 */
+	@Test
+	void concurrentPublishersTest() throws Exception {
+		TransferEventRingBuffer ringBuffer = new TransferEventRingBuffer(4);
+		int publishers = 8;
+		int events = 20000;
+		ExecutorService executor = Executors.newFixedThreadPool(publishers);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int p = 0; p < publishers; p++) {
+			String id = "p" + p;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < events; i++) {
+					ringBuffer.publish(id, id, BigDecimal.valueOf(id.hashCode()));
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		long cursor = ringBuffer.getCursor();
+		assertThat(cursor).isEqualTo((long) publishers * events);
+		for (long sequence = ringBuffer.getOldestAvailable(); sequence < cursor; sequence++) {
+			TransferEvent event = ringBuffer.read(sequence);
+			// A publisher overtaken a whole lap leaves the later event in its slot
+			if (event != null) {
+				assertThat(event.accountToId()).isEqualTo(event.accountFromId());
+				assertThat(event.amount()).isEqualByComparingTo(BigDecimal.valueOf(event.accountFromId().hashCode()));
+			}
+		}
+	}
+}
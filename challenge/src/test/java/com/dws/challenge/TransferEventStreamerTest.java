@@ -0,0 +1,93 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.events.TransferEventRingBuffer;
+import com.dws.challenge.events.TransferEventStreamer;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@SpringBootTest(properties = "events.ring-buffer-size=4")
+class TransferEventStreamerTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransferEventRingBuffer transferEventRingBuffer;
+
+	@Autowired
+	private TransferEventStreamer transferEventStreamer;
+
+	@BeforeEach
+	void createAccounts() {
+		accountsService.clearAccounts();
+		accountsService.createAccount(new Account("1001", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("1002", new BigDecimal(1000)));
+		for (int i = 0; i < 6; i++) {
+			accountsService.transfer("1001", "1002", BigDecimal.ONE);
+		}
+	}
+
+	/**
+	 * This function is used for test a subscriber resuming after overwritten
+	 * events first gets a gap event, then the events still available
+	 */
+	@Test
+	void resumeAfterOverwrittenEventsTest() throws Exception {
+		long oldestAvailable = transferEventRingBuffer.getOldestAvailable();
+		CapturingEmitter emitter = new CapturingEmitter();
+
+		transferEventStreamer.subscribe(emitter, null, oldestAvailable - 2);
+
+		assertThat(emitter.next()).contains("id:" + (oldestAvailable - 1), "event:gap");
+		assertThat(emitter.next()).contains("id:" + oldestAvailable, "event:transfer");
+		emitter.complete();
+	}
+
+	/**
+	 * This function is used for test a subscriber resuming after an event not
+	 * published yet first gets a reset event, then the new events
+	 */
+	@Test
+	void resumeAheadOfCursorTest() throws Exception {
+		long cursor = transferEventRingBuffer.getCursor();
+		CapturingEmitter emitter = new CapturingEmitter();
+
+		transferEventStreamer.subscribe(emitter, null, cursor + 10);
+		assertThat(emitter.next()).contains("id:" + (cursor - 1), "event:reset");
+
+		accountsService.transfer("1001", "1002", BigDecimal.ONE);
+		assertThat(emitter.next()).contains("id:" + cursor, "event:transfer");
+		emitter.complete();
+	}
+
+	// Keeps the sent events as text instead of writing them to a response
+	private static final class CapturingEmitter extends SseEmitter {
+
+		private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+		@Override
+		public void send(SseEventBuilder builder) {
+			events.add(builder.build().stream().map(data -> data.getData().toString())
+					.collect(Collectors.joining()));
+		}
+
+		String next() throws InterruptedException {
+			String event = events.poll(5, TimeUnit.SECONDS);
+			assertThat(event).isNotNull();
+			return event;
+		}
+	}
+}